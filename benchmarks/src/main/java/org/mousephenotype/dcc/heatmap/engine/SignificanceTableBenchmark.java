@@ -0,0 +1,80 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.engine;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.mousephenotype.dcc.heatmap.entities.SignificanceEntry;
+import org.mousephenotype.dcc.heatmap.entities.SparseCell;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Assembly of the heatmap matrix from the resident significance table.
+ *
+ * The rows parameter covers the procedure type (about 30) and the parameter
+ * and MP term (about 300) views; the genotypes parameter covers a single
+ * centre and the whole IMPC dataset.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SignificanceTableBenchmark {
+
+    @Param({"30", "300"})
+    public int rows;
+    @Param({"1000", "6000"})
+    public int genotypes;
+    @Param({"0.2"})
+    public double density;
+    private SyntheticData data;
+
+    @Setup
+    public void setUp() {
+        data = new SyntheticData(rows, genotypes, density);
+    }
+
+    @Benchmark
+    public SignificanceEntry[][] toGrid() {
+        return data.getTable().toGrid(data.getRows(), data.getColumns());
+    }
+
+    @Benchmark
+    public float[][] toPlanes() {
+        return data.getTable().toPlanes(data.getRows(), data.getColumns(),
+                SignificanceTable.NO_THRESHOLD);
+    }
+
+    @Benchmark
+    public List<SparseCell> toCells() {
+        return data.getTable().toCells(data.getRows(), data.getColumns(),
+                SignificanceTable.NO_THRESHOLD);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.mousephenotype.dcc.heatmap.entities.ColumnEntry;
+import org.mousephenotype.dcc.heatmap.entities.RowEntry;
+
+/**
+ * Synthetic heatmap data for the benchmarks.
+ *
+ * The shape follows the IMPC dataset: a few thousand genotypes as columns,
+ * tens to hundreds of procedure types, parameters or MP terms as rows, and
+ * a sparse significance matrix. A fixed seed is used, so that every run
+ * benchmarks the same matrix.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class SyntheticData {
+
+    private static final long SEED = 20131111L;
+    private final List<RowEntry> rows;
+    private final List<ColumnEntry> columns;
+    private final SignificanceTable table;
+
+    /**
+     * Creates a matrix with the supplied number of rows and genotypes, where
+     * density is the fraction of cells that have significance.
+     */
+    public SyntheticData(int numRows, int numGenotypes, double density) {
+        Random random = new Random(SEED);
+
+        rows = new ArrayList<>(numRows);
+        for (int i = 0; i < numRows; ++i) {
+            rows.add(new RowEntry("MP:" + (1000000 + i * 37),
+                    "abnormal " + word(random) + "/"
+                    + word(random) + " morphology phenotype"));
+        }
+
+        columns = new ArrayList<>(numGenotypes);
+        SignificanceTable.Builder builder = new SignificanceTable.Builder();
+        Object[] pvalues = new Object[SignificanceTable.NUM_PVALUES];
+        for (int j = 0; j < numGenotypes; ++j) {
+            int genotypeId = 1 + j * 3;
+            ColumnEntry c = new ColumnEntry();
+            c.setKey(genotypeId);
+            c.setSymbol(word(random).toUpperCase() + j);
+            c.setAllele("tm1a(EUCOMM)Wtsi");
+            c.setStrain("C57BL/6N");
+            c.setCentre("Wtsi");
+            c.setIlar("H");
+            c.setCid(1 + random.nextInt(10));
+            c.setGid(genotypeId);
+            c.setSid(1 + random.nextInt(20));
+            columns.add(c);
+
+            for (int i = 0; i < numRows; ++i) {
+                if (random.nextDouble() >= density) {
+                    continue;
+                }
+                for (int p = 0; p < pvalues.length; ++p) {
+                    /* about a third of the zygosity specific values are null */
+                    pvalues[p] = p > 0 && random.nextInt(3) == 0
+                            ? null : Math.pow(random.nextDouble(), 4.0);
+                }
+                builder.add(rows.get(i).getKey(), genotypeId, pvalues, 0);
+            }
+        }
+        table = builder.build();
+    }
+
+    public List<RowEntry> getRows() {
+        return rows;
+    }
+
+    public List<ColumnEntry> getColumns() {
+        return columns;
+    }
+
+    public SignificanceTable getTable() {
+        return table;
+    }
+
+    private static String word(Random random) {
+        int length = 4 + random.nextInt(8);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; ++i) {
+            sb.append((char) ('a' + random.nextInt(26)));
+        }
+        return sb.toString();
+    }
+}
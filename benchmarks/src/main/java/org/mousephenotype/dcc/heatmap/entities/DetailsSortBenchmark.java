@@ -0,0 +1,72 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.entities;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sorting of the cell details by procedure name, as done before returning
+ * the details of a heatmap cell.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class DetailsSortBenchmark {
+
+    @Param({"50", "500"})
+    public int details;
+    private List<Details> unsorted;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(details);
+        unsorted = new ArrayList<>(details);
+        for (int i = 0; i < details; ++i) {
+            Details d = new Details("IMPC_ABC_" + (100 + i) + "_001",
+                    "Parameter " + i, random.nextInt(3), random.nextDouble(),
+                    null, null, null, null, null, null, null, null);
+            d.setProcedureName("Procedure " + random.nextInt(30));
+            unsorted.add(d);
+        }
+    }
+
+    @Benchmark
+    public List<Details> sort() {
+        List<Details> d = new ArrayList<>(unsorted);
+        Collections.sort(d);
+        return d;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.webservice;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.mousephenotype.dcc.heatmap.engine.SyntheticData;
+import org.mousephenotype.dcc.heatmap.engine.TermLabels;
+import org.mousephenotype.dcc.heatmap.entities.RowEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Normalisation of the MP term names used as ontological row headers, as
+ * done once per term when the term labels are loaded.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RowLabelBenchmark {
+
+    @Param({"25", "300"})
+    public int rows;
+    private List<RowEntry> entries;
+
+    @Setup
+    public void setUp() {
+        entries = new SyntheticData(rows, 1, 0.0).getRows();
+    }
+
+    @Benchmark
+    public void getRowLabel(Blackhole bh) {
+        for (int i = 0, n = entries.size(); i < n; ++i) {
+            bh.consume(TermLabels.toRowLabel(
+                    entries.get(i).getValue()));
+        }
+    }
+}
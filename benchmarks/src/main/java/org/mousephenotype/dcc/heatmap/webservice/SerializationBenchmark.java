@@ -0,0 +1,166 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.webservice;
+
+import com.sun.jersey.api.json.JSONConfiguration;
+import com.sun.jersey.api.json.JSONJAXBContext;
+import com.sun.jersey.api.json.JSONMarshaller;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.xml.bind.JAXBException;
+import org.mousephenotype.dcc.heatmap.engine.SignificanceTable;
+import org.mousephenotype.dcc.heatmap.engine.SyntheticData;
+import org.mousephenotype.dcc.heatmap.entities.CellDetails;
+import org.mousephenotype.dcc.heatmap.entities.Details;
+import org.mousephenotype.dcc.heatmap.entities.Heatmap;
+import org.mousephenotype.dcc.heatmap.entities.PackedHeatmap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serialisation of the REST responses, written to a stream that discards
+ * the bytes so that only the encoding is measured.
+ *
+ * HeatmapPack and CellDetailsPack are marshalled with the JAXB based JSON
+ * provider that Jersey uses for them; the heatmap stream and the packed
+ * heatmap use the message body writers of this web application.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"30", "300"})
+    public int rows;
+    @Param({"6000"})
+    public int genotypes;
+    @Param({"0.2"})
+    public double density;
+    private SyntheticData data;
+    private HeatmapPack heatmapPack;
+    private CellDetailsPack detailsPack;
+    private HeatmapStream heatmapStream;
+    private PackedHeatmap packedHeatmap;
+    private JSONMarshaller heatmapMarshaller;
+    private JSONMarshaller detailsMarshaller;
+    private final HeatmapStreamWriter streamWriter = new HeatmapStreamWriter();
+    private final PackedHeatmapWriter packedWriter = new PackedHeatmapWriter();
+    private final CountingOutputStream out = new CountingOutputStream();
+
+    @Setup
+    public void setUp() throws JAXBException {
+        data = new SyntheticData(rows, genotypes, density);
+        SignificanceTable t = data.getTable();
+
+        heatmapPack = new HeatmapPack();
+        heatmapPack.setData(new Heatmap("Benchmark", data.getRows(),
+                data.getColumns(), t.toGrid(data.getRows(), data.getColumns())));
+        heatmapStream = new HeatmapStream("Benchmark", data.getRows(),
+                data.getColumns(), t, SignificanceTable.NO_THRESHOLD);
+        packedHeatmap = new PackedHeatmap("Benchmark", data.getRows(),
+                data.getColumns(), t.toPlanes(data.getRows(),
+                data.getColumns(), SignificanceTable.NO_THRESHOLD));
+
+        detailsPack = new CellDetailsPack();
+        detailsPack.setData(new CellDetails(createDetails(rows)));
+
+        heatmapMarshaller = new JSONJAXBContext(JSONConfiguration.DEFAULT,
+                HeatmapPack.class).createJSONMarshaller();
+        detailsMarshaller = new JSONJAXBContext(JSONConfiguration.DEFAULT,
+                CellDetailsPack.class).createJSONMarshaller();
+    }
+
+    @Benchmark
+    public long heatmapPack() throws JAXBException {
+        heatmapMarshaller.marshallToJSON(heatmapPack, out);
+        return out.getCount();
+    }
+
+    @Benchmark
+    public long heatmapStream() throws IOException {
+        streamWriter.writeTo(heatmapStream, HeatmapStream.class, null,
+                null, null, null, out);
+        return out.getCount();
+    }
+
+    @Benchmark
+    public long packedHeatmap() throws IOException {
+        packedWriter.writeTo(packedHeatmap, PackedHeatmap.class, null,
+                null, null, null, out);
+        return out.getCount();
+    }
+
+    @Benchmark
+    public long cellDetailsPack() throws JAXBException {
+        detailsMarshaller.marshallToJSON(detailsPack, out);
+        return out.getCount();
+    }
+
+    /* a details list is about one entry per significant parameter */
+    private static List<Details> createDetails(int count) {
+        Random random = new Random(count);
+        List<Details> details = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            Details d = new Details("IMPC_ABC_" + (100 + i) + "_001",
+                    "Parameter " + i, random.nextInt(3),
+                    random.nextDouble(), random.nextDouble(), null, null,
+                    random.nextDouble(), random.nextDouble(), null, null,
+                    "MP:" + (1000000 + i));
+            d.setProcedureName("Procedure " + random.nextInt(30));
+            d.setMpTerm("abnormal term " + i);
+            details.add(d);
+        }
+        return details;
+    }
+
+    /* counts, and then discards, the serialised bytes */
+    private static class CountingOutputStream extends OutputStream {
+
+        private long count = 0;
+
+        @Override
+        public void write(int b) {
+            ++count;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.loadtest;
+
+import java.io.File;
+import javax.servlet.ServletException;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.startup.Tomcat;
+
+/**
+ * Embedded Tomcat serving the exploded war of the web application, as it
+ * is deployed in production, under the /heatmap context.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class EmbeddedServer {
+
+    public static final String CONTEXT_PATH = "/heatmap";
+    private final Tomcat tomcat = new Tomcat();
+    private final int port;
+
+    public EmbeddedServer(File webapp, int port, int threads)
+            throws ServletException {
+        if (!new File(webapp, "WEB-INF/web.xml").isFile()) {
+            throw new IllegalArgumentException("No web application at "
+                    + webapp.getAbsolutePath() + "; run 'mvn package' first");
+        }
+        this.port = port;
+        File base = new File(System.getProperty("java.io.tmpdir"),
+                "heatmap-loadtest-" + port);
+        base.mkdirs();
+        tomcat.setBaseDir(base.getAbsolutePath());
+        tomcat.setPort(port);
+        tomcat.getConnector().setAttribute("maxThreads", threads);
+        tomcat.getConnector().setAttribute("acceptCount", threads);
+        tomcat.addWebapp(CONTEXT_PATH, webapp.getAbsolutePath());
+    }
+
+    public String getRestUrl() {
+        return "http://localhost:" + port + CONTEXT_PATH + "/rest/";
+    }
+
+    public void start() throws LifecycleException {
+        tomcat.start();
+    }
+
+    public void stop() throws LifecycleException {
+        tomcat.stop();
+        tomcat.destroy();
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.loadtest;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import org.mousephenotype.dcc.entities.overviews.ACentre;
+import org.mousephenotype.dcc.entities.overviews.Genotype;
+import org.mousephenotype.dcc.entities.overviews.MeasurementsPerformed;
+import org.mousephenotype.dcc.entities.overviews.ProceduresPerformed;
+import org.mousephenotype.dcc.entities.overviews.Strain;
+import org.mousephenotype.dcc.heatmap.entities.Annotation;
+import org.mousephenotype.dcc.heatmap.entities.ParametersForProcedureType;
+import org.mousephenotype.dcc.heatmap.entities.Term;
+
+/**
+ * Seeds the embedded database with synthetic fixtures shaped like the IMPC
+ * dataset: procedure types and their parameters, the MP ontology terms,
+ * centres, strains, genotypes and the statistical annotations.
+ *
+ * The tables are created by EclipseLink from the persistence unit of the
+ * web application, so they always match the entities. The significance
+ * table is then aggregated from the annotations with the same reduction
+ * as SignificanceRefresher, which cannot run here since it relies on MySQL
+ * statements.
+ *
+ * A fixed seed is used, so that every run serves the same dataset.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class Fixtures {
+
+    public static final int NUM_PROCEDURE_TYPES = 25;
+    public static final int PARAMETERS_PER_TYPE = 12;
+    public static final int NUM_TOP_LEVEL_TERMS = 20;
+    public static final int TERMS_PER_TOP_LEVEL = 15;
+    public static final int NUM_CENTRES = 10;
+    public static final int NUM_STRAINS = 20;
+
+    private static final String PERSISTENCE_UNIT =
+            "org.mousephenotype.dcc.heatmap.entities.pu";
+    private static final String[] SCHEMAS = {
+        "phenodcc_heatmap", "phenodcc_annotations", "phenodcc_overviews",
+        "ols", "impress", "phenodcc_qc", "phenodcc_raw", "phenodcc_context",
+        "phenodcc_tracker", "phenodcc_media"
+    };
+    private static final long SEED = 20131111L;
+
+    /* same reduction as SignificanceRefresher, in standard SQL */
+    private static final String PVALUES =
+            "min(a.pvalue_double), "
+            + "min(case a.zygosity when 1 then a.pvalue_double else 9999.0 end), "
+            + "min(case a.zygosity when 0 then a.pvalue_double else 9999.0 end), "
+            + "min(case a.zygosity when 2 then a.pvalue_double else 9999.0 end), "
+            + "min(a.pvalue_sex), "
+            + "min(case a.zygosity when 1 then a.pvalue_sex else 9999.0 end), "
+            + "min(case a.zygosity when 0 then a.pvalue_sex else 9999.0 end), "
+            + "min(case a.zygosity when 2 then a.pvalue_sex else 9999.0 end)";
+    private static final String INSERT_SIGNIFICANCE =
+            "insert into phenodcc_heatmap.significance (dimension, group_key,"
+            + " row_key, genotype_id, pvalue, hom_pvalue, het_pvalue,"
+            + " hem_pvalue, sex_pvalue, hom_sex_pvalue, het_sex_pvalue,"
+            + " hem_sex_pvalue) ";
+    private static final String PARAMETERS =
+            " join phenodcc_heatmap.parameters_for_procedure_type p"
+            + " on (a.parameterId = p.parameter_key)";
+    private static final String[] AGGREGATIONS = {
+        "select 0, '', cast(p.procedure_type as varchar), a.genotypeId, "
+        + PVALUES + " from phenodcc_annotations.annotation a" + PARAMETERS
+        + " where a.genotypeId is not null"
+        + " group by p.procedure_type, a.genotypeId",
+        "select 1, '', p.parameter_key, a.genotypeId, "
+        + PVALUES + " from phenodcc_annotations.annotation a" + PARAMETERS
+        + " where a.genotypeId is not null"
+        + " group by p.parameter_key, a.genotypeId",
+        "select 2, '', a.\"2y_MP\", a.genotypeId, "
+        + PVALUES + " from phenodcc_annotations.annotation a"
+        + " where a.genotypeId is not null and a.\"2y_MP\" is not null"
+        + " group by a.\"2y_MP\", a.genotypeId",
+        "select 3, a.\"2y_MP\", a.\"1y_MP\", a.genotypeId, "
+        + PVALUES + " from phenodcc_annotations.annotation a"
+        + " where a.genotypeId is not null and a.\"2y_MP\" is not null"
+        + " and a.\"1y_MP\" is not null"
+        + " group by a.\"2y_MP\", a.\"1y_MP\", a.genotypeId"
+    };
+
+    private final String url;
+    private final int numGenotypes;
+    private final int annotationsPerGenotype;
+
+    public Fixtures(String url, int numGenotypes, int annotationsPerGenotype) {
+        this.url = url;
+        this.numGenotypes = numGenotypes;
+        this.annotationsPerGenotype = annotationsPerGenotype;
+    }
+
+    public static String getParameterKey(int type, int parameter) {
+        return "IMPC_" + (char) ('A' + type % 26) + (char) ('A' + type / 26)
+                + "X_" + String.format("%03d", parameter + 1) + "_001";
+    }
+
+    public static String getTopLevelTermId(int term) {
+        return String.format("MP:%07d", 5000 + term);
+    }
+
+    public static String getTermId(int topLevel, int term) {
+        return String.format("MP:%07d",
+                100000 + topLevel * TERMS_PER_TOP_LEVEL + term);
+    }
+
+    public static String getMgiId(int genotype) {
+        return "MGI:" + (1900000 + genotype);
+    }
+
+    public static String getGeneSymbol(int genotype) {
+        return "Gene" + genotype;
+    }
+
+    public void seed() throws SQLException {
+        long start = System.currentTimeMillis();
+        createSchemas();
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.driver", "org.h2.Driver");
+        properties.put("javax.persistence.jdbc.url", url);
+        properties.put("eclipselink.ddl-generation", "create-tables");
+        properties.put("eclipselink.ddl-generation.output-mode", "database");
+        properties.put("eclipselink.database.delimiters", "true");
+        properties.put("eclipselink.logging.level", "SEVERE");
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory(
+                PERSISTENCE_UNIT, properties);
+        try {
+            EntityManager em = emf.createEntityManager();
+            try {
+                em.getTransaction().begin();
+                seedDimensions(em);
+                em.getTransaction().commit();
+                em.clear();
+                seedGenotypes(emf);
+            } finally {
+                em.close();
+            }
+        } finally {
+            emf.close();
+        }
+        aggregateSignificance();
+        System.out.println("Fixtures for " + numGenotypes
+                + " genotypes were seeded in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /* the significance id is not generated, so we create the table here */
+    private void createSchemas() throws SQLException {
+        try (Connection c = DriverManager.getConnection(url);
+                Statement s = c.createStatement()) {
+            for (String schema : SCHEMAS) {
+                s.execute("create schema if not exists " + schema);
+            }
+            s.execute("create table phenodcc_heatmap.significance ("
+                    + " id bigint not null auto_increment,"
+                    + " dimension tinyint not null,"
+                    + " group_key varchar(100) not null default '',"
+                    + " row_key varchar(100) not null,"
+                    + " genotype_id int not null,"
+                    + " pvalue double, hom_pvalue double, het_pvalue double,"
+                    + " hem_pvalue double, sex_pvalue double,"
+                    + " hom_sex_pvalue double, het_sex_pvalue double,"
+                    + " hem_sex_pvalue double,"
+                    + " primary key (id))");
+        }
+    }
+
+    private void seedDimensions(EntityManager em) {
+        int id = 0;
+        for (int t = 0; t < NUM_PROCEDURE_TYPES; ++t) {
+            for (int p = 0; p < PARAMETERS_PER_TYPE; ++p) {
+                ParametersForProcedureType a = new ParametersForProcedureType();
+                a.setId(++id);
+                a.setProcedureType(t + 1);
+                a.setProcedureName("Procedure " + (t + 1));
+                a.setParameterKey(getParameterKey(t, p));
+                a.setParameterName("Parameter " + (p + 1) + " of procedure "
+                        + (t + 1));
+                em.persist(a);
+
+                MeasurementsPerformed m = new MeasurementsPerformed();
+                m.setParameterId(a.getParameterKey());
+                em.persist(m);
+            }
+        }
+
+        for (int t = 0; t < NUM_TOP_LEVEL_TERMS; ++t) {
+            String topLevel = getTopLevelTermId(t);
+            em.persist(new Term(topLevel, 1, "top level " + t + "/system"
+                    + " phenotype", topLevel));
+            for (int u = 0; u < TERMS_PER_TOP_LEVEL; ++u) {
+                String term = getTermId(t, u);
+                em.persist(new Term(term, 1, "abnormal structure " + u
+                        + " of system " + t, term));
+            }
+        }
+
+        for (int c = 1; c <= NUM_CENTRES; ++c) {
+            ACentre centre = new ACentre();
+            centre.setCentreId(c);
+            centre.setShortName("C" + c);
+            centre.setFullName("Centre " + c);
+            em.persist(centre);
+        }
+        for (int s = 1; s <= NUM_STRAINS; ++s) {
+            Strain strain = new Strain();
+            strain.setStrainId(s);
+            strain.setStrain("C57BL/6N-" + s);
+            em.persist(strain);
+        }
+    }
+
+    /* committed in batches, so that the persistence context stays small */
+    private void seedGenotypes(EntityManagerFactory emf) {
+        Random random = new Random(SEED);
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            for (int g = 1; g <= numGenotypes; ++g) {
+                int centre = 1 + random.nextInt(NUM_CENTRES);
+                int strain = 1 + random.nextInt(NUM_STRAINS);
+
+                Genotype genotype = new Genotype();
+                genotype.setGenotypeId(g);
+                genotype.setGeneSymbol(getGeneSymbol(g));
+                genotype.setGeneId(getMgiId(g));
+                genotype.setAlleleName("Gene" + g + "<tm1a(EUCOMM)Wtsi>");
+                genotype.setCentreId(centre);
+                genotype.setStrainId(strain);
+                em.persist(genotype);
+
+                ProceduresPerformed performed = new ProceduresPerformed();
+                performed.setGenotypeId(g);
+                em.persist(performed);
+
+                for (int i = 0; i < annotationsPerGenotype; ++i) {
+                    int type = random.nextInt(NUM_PROCEDURE_TYPES);
+                    int topLevel = random.nextInt(NUM_TOP_LEVEL_TERMS);
+                    Annotation a = new Annotation();
+                    a.setGenotypeId(g);
+                    a.setCentre(centre);
+                    a.setStrain(strain);
+                    a.setZygosity(random.nextInt(3));
+                    a.setParameterId(getParameterKey(type,
+                            random.nextInt(PARAMETERS_PER_TYPE)));
+                    a.setPvalueDouble(Math.pow(random.nextDouble(), 6.0));
+                    a.setPvalueSex(random.nextInt(3) == 0
+                            ? null : Math.pow(random.nextDouble(), 6.0));
+                    a.setYMP1(getTopLevelTermId(topLevel));
+                    a.setYMP(getTermId(topLevel,
+                            random.nextInt(TERMS_PER_TOP_LEVEL)));
+                    a.setSuccess(Boolean.TRUE);
+                    em.persist(a);
+                }
+                if (g % 500 == 0) {
+                    em.getTransaction().commit();
+                    em.clear();
+                    em.getTransaction().begin();
+                }
+            }
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    private void aggregateSignificance() throws SQLException {
+        try (Connection c = DriverManager.getConnection(url);
+                Statement s = c.createStatement()) {
+            for (String select : AGGREGATIONS) {
+                s.executeUpdate(INSERT_SIGNIFICANCE + select);
+            }
+        }
+    }
+}
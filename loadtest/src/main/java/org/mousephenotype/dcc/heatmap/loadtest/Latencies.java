@@ -0,0 +1,89 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Latencies recorded by one client thread. Each client records into its own
+ * instance, and the instances are merged once the run has finished, so
+ * that recording does not add contention to the measurement.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class Latencies {
+
+    private long[] nanos = new long[4096];
+    private int count = 0;
+    private int errors = 0;
+    private long bytes = 0L;
+
+    public void record(long elapsedNanos, long responseBytes) {
+        if (count == nanos.length) {
+            nanos = Arrays.copyOf(nanos, count * 2);
+        }
+        nanos[count++] = elapsedNanos;
+        bytes += responseBytes;
+    }
+
+    public void recordError() {
+        ++errors;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getErrors() {
+        return errors;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public void merge(Latencies other) {
+        if (count + other.count > nanos.length) {
+            nanos = Arrays.copyOf(nanos, count + other.count);
+        }
+        System.arraycopy(other.nanos, 0, nanos, count, other.count);
+        count += other.count;
+        errors += other.errors;
+        bytes += other.bytes;
+    }
+
+    /**
+     * Returns the latency in milliseconds below which the supplied fraction
+     * of the requests completed (nearest rank). This sorts the recorded
+     * latencies, so only call it once all of the clients have stopped.
+     */
+    public double getPercentile(double fraction) {
+        if (count == 0) {
+            return 0.0;
+        }
+        Arrays.sort(nanos, 0, count);
+        int rank = (int) Math.ceil(fraction * count);
+        return nanos[Math.max(0, Math.min(count, rank) - 1)] / 1.0e6;
+    }
+
+    public double getMax() {
+        long max = 0L;
+        for (int i = 0; i < count; ++i) {
+            max = Math.max(max, nanos[i]);
+        }
+        return max / 1.0e6;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Finds the capacity of the heatmap web services on a single machine.
+ *
+ * The web application is deployed into an embedded Tomcat against an
+ * in-memory database seeded with synthetic fixtures (see Fixtures). A
+ * number of concurrent clients then issue requests from the workload mix
+ * back to back, first for a warm-up period which is not measured, and
+ * then for the measured period. At the end, the throughput and the
+ * p50/p99/p999 latencies are reported for each request kind.
+ *
+ * The run is configured with the following system properties:
+ *
+ *     loadtest.webapp     exploded war (../target/phenodcc-heatmap-1.9.7)
+ *     loadtest.port       HTTP port of the embedded Tomcat (18080)
+ *     loadtest.threads    Tomcat request threads (200)
+ *     loadtest.clients    concurrent clients (16)
+ *     loadtest.warmup     warm-up seconds (30)
+ *     loadtest.seconds    measured seconds (60)
+ *     loadtest.genotypes  number of genotypes in the fixtures (2000)
+ *     loadtest.annotations  annotations per genotype (40)
+ *     loadtest.gzip       whether clients accept compressed responses (true)
+ *
+ * Settings of the web application may be overridden as usual with the
+ * 'heatmap.' system properties, e.g., -Dheatmap.pool.max.active=40.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class LoadTest {
+
+    private static final String DATABASE_URL = "jdbc:h2:mem:heatmap;"
+            + "MODE=MySQL;DATABASE_TO_LOWER=TRUE;"
+            + "CASE_INSENSITIVE_IDENTIFIERS=TRUE;DB_CLOSE_DELAY=-1";
+
+    private final String restUrl;
+    private final int numGenotypes;
+    private final boolean gzip;
+    private volatile boolean measuring = false;
+    private volatile boolean running = true;
+
+    public LoadTest(String restUrl, int numGenotypes, boolean gzip) {
+        this.restUrl = restUrl;
+        this.numGenotypes = numGenotypes;
+        this.gzip = gzip;
+    }
+
+    public static void main(String[] args) throws Exception {
+        File webapp = new File(System.getProperty("loadtest.webapp",
+                "../target/phenodcc-heatmap-1.9.7"));
+        int port = Integer.getInteger("loadtest.port", 18080);
+        int threads = Integer.getInteger("loadtest.threads", 200);
+        int clients = Integer.getInteger("loadtest.clients", 16);
+        int warmup = Integer.getInteger("loadtest.warmup", 30);
+        int seconds = Integer.getInteger("loadtest.seconds", 60);
+        int genotypes = Integer.getInteger("loadtest.genotypes", 2000);
+        int annotations = Integer.getInteger("loadtest.annotations", 40);
+        boolean gzip = Boolean.parseBoolean(
+                System.getProperty("loadtest.gzip", "true"));
+
+        new Fixtures(DATABASE_URL, genotypes, annotations).seed();
+
+        /* point the web application at the embedded database; the
+         * significance table was aggregated by the fixtures, since the
+         * refresher needs MySQL, and the MP term columns (1y_MP, 2y_MP)
+         * must be quoted to be valid identifiers outside MySQL */
+        System.setProperty("heatmap.db.driver", "org.h2.Driver");
+        System.setProperty("heatmap.db.url", DATABASE_URL);
+        System.setProperty("heatmap.db.user", "");
+        System.setProperty("heatmap.db.password", "");
+        System.setProperty("heatmap.significance.refresh", "false");
+        System.setProperty("eclipselink.database.delimiters", "true");
+
+        EmbeddedServer server = new EmbeddedServer(webapp, port, threads);
+        server.start();
+        try {
+            new LoadTest(server.getRestUrl(), genotypes, gzip)
+                    .run(clients, warmup, seconds);
+        } finally {
+            server.stop();
+        }
+    }
+
+    public void run(int clients, int warmup, int seconds)
+            throws InterruptedException {
+        final List<Latencies[]> recorded = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(clients);
+        for (int c = 0; c < clients; ++c) {
+            final Latencies[] latencies = newLatencies();
+            final Workload workload = new Workload(c, numGenotypes);
+            recorded.add(latencies);
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (running) {
+                            int kind = workload.nextKind();
+                            request(workload.getPath(kind), latencies[kind]);
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, "loadtest-client-" + c);
+            t.setDaemon(true);
+            t.start();
+        }
+
+        System.out.println("Warming up " + clients + " clients for "
+                + warmup + " s");
+        Thread.sleep(warmup * 1000L);
+        measuring = true;
+        long start = System.nanoTime();
+        System.out.println("Measuring for " + seconds + " s");
+        Thread.sleep(seconds * 1000L);
+        measuring = false;
+        double elapsed = (System.nanoTime() - start) / 1.0e9;
+        running = false;
+        done.await();
+
+        Latencies[] total = newLatencies();
+        for (Latencies[] l : recorded) {
+            for (int k = 0; k < total.length; ++k) {
+                total[k].merge(l[k]);
+            }
+        }
+        report(total, clients, elapsed);
+    }
+
+    private void request(String path, Latencies latencies) {
+        long start = System.nanoTime();
+        long bytes = 0L;
+        boolean failed = false;
+        try {
+            HttpURLConnection c =
+                    (HttpURLConnection) new URL(restUrl + path).openConnection();
+            c.setRequestProperty("Accept", "application/json");
+            if (gzip) {
+                c.setRequestProperty("Accept-Encoding", "gzip");
+            }
+            failed = c.getResponseCode() != HttpURLConnection.HTTP_OK;
+            /* read the whole body, so that the connection is reused */
+            try (InputStream in = failed
+                    ? c.getErrorStream() : c.getInputStream()) {
+                if (in != null) {
+                    byte[] buffer = new byte[8192];
+                    int n;
+                    while ((n = in.read(buffer)) != -1) {
+                        bytes += n;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            failed = true;
+        }
+        if (measuring) {
+            if (failed) {
+                latencies.recordError();
+            } else {
+                latencies.record(System.nanoTime() - start, bytes);
+            }
+        }
+    }
+
+    private static Latencies[] newLatencies() {
+        Latencies[] l = new Latencies[Workload.KINDS.length];
+        for (int k = 0; k < l.length; ++k) {
+            l[k] = new Latencies();
+        }
+        return l;
+    }
+
+    private static void report(Latencies[] latencies, int clients,
+            double elapsed) {
+        Latencies all = new Latencies();
+        System.out.println();
+        System.out.println(String.format("%-30s %9s %7s %9s %9s %9s %9s %9s",
+                "request", "req/s", "errors", "kB/req", "p50 ms", "p99 ms",
+                "p999 ms", "max ms"));
+        for (int k = 0; k < latencies.length; ++k) {
+            printRow(Workload.KINDS[k], latencies[k], elapsed);
+            all.merge(latencies[k]);
+        }
+        printRow("all (" + clients + " clients)", all, elapsed);
+    }
+
+    private static void printRow(String name, Latencies l, double elapsed) {
+        System.out.println(String.format(
+                "%-30s %9.1f %7d %9.1f %9.2f %9.2f %9.2f %9.2f",
+                name, l.getCount() / elapsed, l.getErrors(),
+                l.getCount() == 0 ? 0.0 : l.getBytes() / 1024.0 / l.getCount(),
+                l.getPercentile(0.50), l.getPercentile(0.99),
+                l.getPercentile(0.999), l.getMax()));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.loadtest;
+
+import java.util.Random;
+
+/**
+ * The mix of requests issued by the clients, modelled on a user browsing
+ * the heatmap: mostly heatmaps for a gene, or for a gene symbol prefix,
+ * followed by drilling into a row and opening the details of a cell.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class Workload {
+
+    /* request kinds, also the order in which they are reported */
+    public static final String[] KINDS = {
+        "procedural/heatmap",
+        "procedural/heatmap?type",
+        "ontological/heatmap",
+        "ontological/heatmap?type",
+        "procedural/details",
+        "procedural/details/parameter",
+        "ontological/details"
+    };
+    private static final int[] WEIGHTS = {20, 15, 20, 15, 10, 10, 10};
+    private static final int TOTAL_WEIGHT = 100;
+    private static final String THRESHOLD = "threshold=0.0001";
+
+    private final Random random;
+    private final int numGenotypes;
+
+    public Workload(long seed, int numGenotypes) {
+        this.random = new Random(seed);
+        this.numGenotypes = numGenotypes;
+    }
+
+    /**
+     * Picks the next request kind, as an index into KINDS.
+     */
+    public int nextKind() {
+        int w = random.nextInt(TOTAL_WEIGHT);
+        for (int k = 0; k < WEIGHTS.length; ++k) {
+            w -= WEIGHTS[k];
+            if (w < 0) {
+                return k;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the path, relative to the REST root, of a request of the
+     * supplied kind.
+     */
+    public String getPath(int kind) {
+        int genotype = 1 + random.nextInt(numGenotypes);
+        int type = random.nextInt(Fixtures.NUM_PROCEDURE_TYPES);
+        int topLevel = random.nextInt(Fixtures.NUM_TOP_LEVEL_TERMS);
+        switch (kind) {
+            case 0:
+                return "procedural/heatmap?" + getGenes(genotype)
+                        + "&" + THRESHOLD;
+            case 1:
+                return "procedural/heatmap?" + getGenes(genotype)
+                        + "&type=" + (type + 1) + "&" + THRESHOLD;
+            case 2:
+                return "ontological/heatmap?" + getGenes(genotype)
+                        + "&" + THRESHOLD;
+            case 3:
+                return "ontological/heatmap?" + getGenes(genotype)
+                        + "&type=" + Fixtures.getTopLevelTermId(topLevel)
+                        + "&" + THRESHOLD;
+            case 4:
+                return "procedural/details?gid=" + genotype
+                        + "&type=" + (type + 1) + "&" + THRESHOLD;
+            case 5:
+                return "procedural/details/parameter?gid=" + genotype
+                        + "&type=" + Fixtures.getParameterKey(type,
+                        random.nextInt(Fixtures.PARAMETERS_PER_TYPE))
+                        + "&" + THRESHOLD;
+            default:
+                return "ontological/details?gid=" + genotype
+                        + "&type=" + Fixtures.getTopLevelTermId(topLevel)
+                        + "&" + THRESHOLD;
+        }
+    }
+
+    /* a quarter of the heatmaps are for all genes matching a prefix */
+    private String getGenes(int genotype) {
+        if (random.nextInt(4) == 0) {
+            return "filter=" + Fixtures.getGeneSymbol(genotype).substring(0,
+                    Math.min(6, Fixtures.getGeneSymbol(genotype).length()));
+        }
+        return "mgiid=" + Fixtures.getMgiId(genotype);
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaQuery;
+import org.mousephenotype.dcc.entities.overviews.ACentre;
+import org.mousephenotype.dcc.entities.overviews.Strain;
+import org.mousephenotype.dcc.heatmap.entities.ParametersForProcedureType;
+import org.mousephenotype.dcc.heatmap.entities.RowEntry;
+import org.mousephenotype.dcc.heatmap.persistence.DatasetListener;
+import org.mousephenotype.dcc.heatmap.persistence.PersistenceManager;
+
+/**
+ * Resident catalog of the dimensions used in heatmap headers: centres,
+ * strains, procedure types and their parameters.
+ *
+ * These are a few hundred reference rows, so we load all of them once per
+ * dataset version and build the row and column headers from memory. As with
+ * the significance engine, a reload replaces the whole catalog in one step.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class DimensionCatalog implements DatasetListener {
+
+    /* same as 'order by' under the case insensitive MySQL collation */
+    private static final Comparator<RowEntry> ROW_VALUE_ORDER =
+            new Comparator<RowEntry>() {
+                @Override
+                public int compare(RowEntry a, RowEntry b) {
+                    return String.CASE_INSENSITIVE_ORDER.compare(
+                            a.getValue(), b.getValue());
+                }
+            };
+
+    private final PersistenceManager pm;
+    private volatile Snapshot snapshot;
+
+    public DimensionCatalog(PersistenceManager pm) {
+        this.pm = pm;
+    }
+
+    public ACentre getCentre(Integer centreId) {
+        return getSnapshot().centres.get(centreId);
+    }
+
+    public Strain getStrain(Integer strainId) {
+        return getSnapshot().strains.get(strainId);
+    }
+
+    /**
+     * Returns the first procedure type association for the supplied
+     * parameter, or null if the parameter is not associated.
+     */
+    public ParametersForProcedureType getParameter(String parameterKey) {
+        return getSnapshot().parameters.get(parameterKey);
+    }
+
+    /**
+     * Returns the row headers for the procedural heatmap. If type is null,
+     * the rows are procedure types; otherwise, the rows are the measured
+     * parameters that belong to the procedure type.
+     */
+    public List<RowEntry> getProceduralRows(Integer type) {
+        Snapshot s = getSnapshot();
+        if (type == null) {
+            return s.procedureTypeRows;
+        }
+        List<RowEntry> rows = s.parameterRows.get(type);
+        return rows == null ? Collections.<RowEntry>emptyList() : rows;
+    }
+
+    public synchronized void reload() {
+        long start = System.currentTimeMillis();
+        snapshot = load();
+        System.out.println("Dimension catalog was loaded in "
+                + (System.currentTimeMillis() - start) + " ms at "
+                + new java.util.Date());
+    }
+
+    @Override
+    public void datasetChanged(long version) {
+        reload();
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot s = snapshot;
+        if (s == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    reload();
+                }
+                s = snapshot;
+            }
+        }
+        return s;
+    }
+
+    private Snapshot load() {
+        EntityManager em = pm.getEntityManagerFactory().createEntityManager();
+        try {
+            Snapshot s = new Snapshot();
+
+            Map<Integer, ACentre> centres = new HashMap<>();
+            for (ACentre c : findAll(em, ACentre.class)) {
+                centres.put(c.getCentreId(), c);
+            }
+            s.centres = Collections.unmodifiableMap(centres);
+
+            Map<Integer, Strain> strains = new HashMap<>();
+            for (Strain t : findAll(em, Strain.class)) {
+                strains.put(t.getStrainId(), t);
+            }
+            s.strains = Collections.unmodifiableMap(strains);
+
+            List<ParametersForProcedureType> associations = em.createNamedQuery(
+                    "ParametersForProcedureType.findAllOrdered",
+                    ParametersForProcedureType.class).getResultList();
+            Set<String> measured = new HashSet<>(em.createNamedQuery(
+                    "ParametersForProcedureType.getMeasuredParameterKeys",
+                    String.class).getResultList());
+            buildProceduralRows(s, associations, measured);
+            return s;
+        } finally {
+            em.close();
+        }
+    }
+
+    /* associations must be ordered by procedure type */
+    private void buildProceduralRows(Snapshot s,
+            List<ParametersForProcedureType> associations,
+            Set<String> measured) {
+        Map<String, ParametersForProcedureType> parameters = new HashMap<>();
+        Map<Integer, String> types = new LinkedHashMap<>();
+        Map<Integer, Map<String, String>> parametersForType = new HashMap<>();
+
+        Iterator<ParametersForProcedureType> i = associations.iterator();
+        while (i.hasNext()) {
+            ParametersForProcedureType p = i.next();
+            if (!parameters.containsKey(p.getParameterKey())) {
+                parameters.put(p.getParameterKey(), p);
+            }
+            if (!types.containsKey(p.getProcedureType())) {
+                types.put(p.getProcedureType(), p.getProcedureName());
+            }
+            if (measured.contains(p.getParameterKey())) {
+                Map<String, String> m = parametersForType.get(p.getProcedureType());
+                if (m == null) {
+                    m = new HashMap<>();
+                    parametersForType.put(p.getProcedureType(), m);
+                }
+                m.put(p.getParameterKey(), p.getParameterName());
+            }
+        }
+        s.parameters = Collections.unmodifiableMap(parameters);
+
+        List<RowEntry> typeRows = new ArrayList<>();
+        for (Map.Entry<Integer, String> e : types.entrySet()) {
+            typeRows.add(new RowEntry(e.getKey(), e.getValue()));
+        }
+        s.procedureTypeRows = Collections.unmodifiableList(typeRows);
+
+        Map<Integer, List<RowEntry>> parameterRows = new HashMap<>();
+        for (Map.Entry<Integer, Map<String, String>> e : parametersForType.entrySet()) {
+            List<RowEntry> rows = new ArrayList<>();
+            for (Map.Entry<String, String> p : e.getValue().entrySet()) {
+                rows.add(new RowEntry(p.getKey(), p.getValue()));
+            }
+            Collections.sort(rows, ROW_VALUE_ORDER);
+            parameterRows.put(e.getKey(), Collections.unmodifiableList(rows));
+        }
+        s.parameterRows = Collections.unmodifiableMap(parameterRows);
+    }
+
+    private <T> List<T> findAll(EntityManager em, Class<T> entityClass) {
+        CriteriaQuery<T> cq = em.getCriteriaBuilder().createQuery(entityClass);
+        cq.select(cq.from(entityClass));
+        return em.createQuery(cq).getResultList();
+    }
+
+    private static class Snapshot {
+
+        Map<Integer, ACentre> centres;
+        Map<Integer, Strain> strains;
+        Map<String, ParametersForProcedureType> parameters;
+        List<RowEntry> procedureTypeRows;
+        Map<Integer, List<RowEntry>> parameterRows;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import org.mousephenotype.dcc.entities.overviews.Genotype;
+import org.mousephenotype.dcc.heatmap.persistence.DatasetListener;
+import org.mousephenotype.dcc.heatmap.persistence.PersistenceManager;
+
+/**
+ * Resident index of the genotypes that have procedures, for finding the
+ * heatmap columns that match a gene symbol prefix.
+ *
+ * The genotypes are kept in a sorted array of lower case gene symbols, so
+ * that the genotypes for a prefix are a contiguous range found with two
+ * binary searches. This replaces a 'like' query per heatmap request, which
+ * MySQL evaluates case insensitively; hence, the index is case insensitive
+ * too. The genotypes can also be looked up by gene and genotype identifier,
+ * for requests that name many genes at once.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class GenotypeIndex implements DatasetListener {
+
+    /* same as 'order by g.geneSymbol, g.genotypeId' */
+    private static final Comparator<Genotype> SYMBOL_ORDER =
+            new Comparator<Genotype>() {
+                @Override
+                public int compare(Genotype a, Genotype b) {
+                    int c = toKey(a.getGeneSymbol()).compareTo(
+                            toKey(b.getGeneSymbol()));
+                    return c != 0 ? c
+                            : a.getGenotypeId().compareTo(b.getGenotypeId());
+                }
+            };
+    private final PersistenceManager pm;
+    private volatile Snapshot snapshot;
+
+    public GenotypeIndex(PersistenceManager pm) {
+        this.pm = pm;
+    }
+
+    /**
+     * Returns the genotypes whose gene symbol starts with the supplied
+     * prefix, ignoring case, ordered by gene symbol and genotype identifier.
+     */
+    public List<Genotype> getByPrefix(String prefix) {
+        Snapshot s = getSnapshot();
+        String key = toKey(prefix);
+        int from = lowerBound(s.keys, key);
+        int to = lowerBound(s.keys, key + Character.MAX_VALUE);
+        return s.genotypes.subList(from, to);
+    }
+
+    /**
+     * Returns every genotype that has procedures, ordered by gene symbol and
+     * genotype identifier.
+     */
+    public List<Genotype> getAll() {
+        return getSnapshot().genotypes;
+    }
+
+    /**
+     * Returns the genotypes of the supplied gene, ordered by genotype
+     * identifier.
+     */
+    public List<Genotype> getByGeneId(String mgiId) {
+        List<Genotype> genotypes = getSnapshot().byGene.get(mgiId);
+        return genotypes == null
+                ? Collections.<Genotype>emptyList() : genotypes;
+    }
+
+    /**
+     * Returns the genotype with the supplied identifier, or null if the
+     * genotype has no procedures.
+     */
+    public Genotype getByGenotypeId(int genotypeId) {
+        Snapshot s = getSnapshot();
+        int i = s.byId.get(genotypeId);
+        return i == -1 ? null : s.genotypes.get(i);
+    }
+
+    public synchronized void reload() {
+        long start = System.currentTimeMillis();
+        snapshot = load();
+        System.out.println("Genotype index was loaded in "
+                + (System.currentTimeMillis() - start) + " ms at "
+                + new java.util.Date());
+    }
+
+    @Override
+    public void datasetChanged(long version) {
+        reload();
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot s = snapshot;
+        if (s == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    reload();
+                }
+                s = snapshot;
+            }
+        }
+        return s;
+    }
+
+    private Snapshot load() {
+        EntityManager em = pm.getEntityManagerFactory().createEntityManager();
+        try {
+            List<Genotype> found = em.createNamedQuery(
+                    "ParametersForProcedureType.getGenotypesWithProcedures",
+                    Genotype.class).getResultList();
+            Genotype[] genotypes = found.toArray(new Genotype[found.size()]);
+            Arrays.sort(genotypes, SYMBOL_ORDER);
+
+            Snapshot s = new Snapshot();
+            s.keys = new String[genotypes.length];
+            for (int i = 0; i < genotypes.length; ++i) {
+                s.keys[i] = toKey(genotypes[i].getGeneSymbol());
+            }
+            s.genotypes = Collections.unmodifiableList(Arrays.asList(genotypes));
+
+            s.byId = new IntIndexMap(genotypes.length);
+            Map<String, List<Genotype>> byGene = new HashMap<>();
+            for (int i = 0; i < genotypes.length; ++i) {
+                Genotype g = genotypes[i];
+                s.byId.put(g.getGenotypeId(), i);
+                List<Genotype> l = byGene.get(g.getGeneId());
+                if (l == null) {
+                    l = new ArrayList<>(1);
+                    byGene.put(g.getGeneId(), l);
+                }
+                l.add(g);
+            }
+            s.byGene = byGene;
+            return s;
+        } finally {
+            em.close();
+        }
+    }
+
+    /* index of the first key that is not less than the supplied key */
+    private static int lowerBound(String[] keys, String key) {
+        int low = 0, high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static String toKey(String symbol) {
+        return symbol.toLowerCase(Locale.ENGLISH);
+    }
+
+    private static class Snapshot {
+
+        String[] keys;
+        List<Genotype> genotypes;
+        IntIndexMap byId;
+        Map<String, List<Genotype>> byGene;
+    }
+}
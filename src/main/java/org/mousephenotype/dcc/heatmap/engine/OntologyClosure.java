@@ -0,0 +1,310 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import org.mousephenotype.dcc.heatmap.persistence.DatasetListener;
+import org.mousephenotype.dcc.heatmap.persistence.PersistenceManager;
+
+/**
+ * Resident copy of the MP ontology, with the ancestors of every term.
+ *
+ * The annotations only record the annotated term and its top-level term;
+ * rolling significance up to any other level of the ontology needs the
+ * whole 'is_a' hierarchy, which we load from the OLS term tables once per
+ * dataset version. The terms are numbered in topological order, so that
+ * every ancestor of a term has a smaller number than the term. The
+ * ancestor closure of each term, which includes the term itself, is kept
+ * as a sorted list of term numbers; the lists of all the terms are packed
+ * into one array, where those of term k start at offsets[k]. A term only
+ * has a few tens of ancestors, so this grows linearly with the size of the
+ * ontology. The ancestors of a term at a given depth, i.e., the shortest
+ * distance from the root, are those in its list with that depth.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class OntologyClosure implements DatasetListener {
+
+    private static final String PREFIX = "MP:%";
+    private final PersistenceManager pm;
+    private volatile Snapshot snapshot;
+
+    public OntologyClosure(PersistenceManager pm) {
+        this.pm = pm;
+    }
+
+    public boolean contains(String termId) {
+        return getSnapshot().index.containsKey(termId);
+    }
+
+    /**
+     * Returns the name of the supplied term, or null if the term is not in
+     * the ontology.
+     */
+    public String getName(String termId) {
+        Snapshot s = getSnapshot();
+        Integer t = s.index.get(termId);
+        return t == null ? null : s.names[t];
+    }
+
+    /**
+     * Returns the shortest distance from the root to the supplied term, or
+     * -1 if the term is not in the ontology. The root has depth 0, and the
+     * top-level terms have depth 1.
+     */
+    public int getDepth(String termId) {
+        Snapshot s = getSnapshot();
+        Integer t = s.index.get(termId);
+        return t == null ? -1 : s.depths[t];
+    }
+
+    /**
+     * Returns true if the first term is the second term, or one of its
+     * ancestors.
+     */
+    public boolean isAncestor(String ancestorId, String termId) {
+        Snapshot s = getSnapshot();
+        Integer a = s.index.get(ancestorId), t = s.index.get(termId);
+        return a != null && t != null && Arrays.binarySearch(s.ancestors,
+                s.offsets[t], s.offsets[t + 1], a) >= 0;
+    }
+
+    /**
+     * Returns the ancestors of the supplied term that are at the supplied
+     * depth, in topological order. A term that is at the depth is its own
+     * ancestor; a term above the depth has no ancestors at the depth.
+     */
+    public List<String> getAncestorsAtDepth(String termId, int depth) {
+        Snapshot s = getSnapshot();
+        List<String> ancestors = new ArrayList<>();
+        Integer t = s.index.get(termId);
+        if (t == null) {
+            return ancestors;
+        }
+        for (int x = s.offsets[t], e = s.offsets[t + 1]; x < e; ++x) {
+            int a = s.ancestors[x];
+            if (s.depths[a] == depth) {
+                ancestors.add(s.ids[a]);
+            }
+        }
+        return ancestors;
+    }
+
+    /**
+     * Rolls the p-values of the supplied terms up to their ancestors at the
+     * supplied depth, in one pass over the terms. Returns the smallest
+     * p-value of each ancestor, in topological order. Terms that are not in
+     * the ontology, or are above the depth, and null p-values are ignored.
+     */
+    public Map<String, Double> rollUp(List<String> termIds,
+            List<Double> pvalues, int depth) {
+        Snapshot s = getSnapshot();
+        Map<String, Double> rolledUp = new LinkedHashMap<>();
+        if (depth < 0 || depth > s.maxDepth) {
+            return rolledUp;
+        }
+        double[] min = new double[s.ids.length];
+        Arrays.fill(min, Double.NaN);
+        for (int i = 0, n = termIds.size(); i < n; ++i) {
+            Integer t = s.index.get(termIds.get(i));
+            Double p = pvalues.get(i);
+            if (t == null || p == null) {
+                continue;
+            }
+            for (int x = s.offsets[t], e = s.offsets[t + 1]; x < e; ++x) {
+                int a = s.ancestors[x];
+                if (s.depths[a] == depth && !(min[a] <= p)) {
+                    min[a] = p;
+                }
+            }
+        }
+        for (int a = 0; a < min.length; ++a) {
+            if (!Double.isNaN(min[a])) {
+                rolledUp.put(s.ids[a], min[a]);
+            }
+        }
+        return rolledUp;
+    }
+
+    public synchronized void reload() {
+        long start = System.currentTimeMillis();
+        snapshot = load();
+        System.out.println("Ontology closure was loaded in "
+                + (System.currentTimeMillis() - start) + " ms at "
+                + new java.util.Date());
+    }
+
+    @Override
+    public void datasetChanged(long version) {
+        reload();
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot s = snapshot;
+        if (s == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    reload();
+                }
+                s = snapshot;
+            }
+        }
+        return s;
+    }
+
+    private Snapshot load() {
+        EntityManager em = pm.getEntityManagerFactory().createEntityManager();
+        try {
+            TypedQuery<Object[]> query = em.createNamedQuery(
+                    "Term.getNamesByPrefix", Object[].class);
+            query.setParameter("prefix", PREFIX);
+            List<Object[]> terms = query.getResultList();
+
+            query = em.createNamedQuery(
+                    "TermRelationship.getParentsByPrefix", Object[].class);
+            query.setParameter("prefix", PREFIX);
+            List<Object[]> edges = query.getResultList();
+            return build(terms, edges);
+        } finally {
+            em.close();
+        }
+    }
+
+    /* terms are (identifier, name); edges are (child, parent) identifiers */
+    private Snapshot build(List<Object[]> terms, List<Object[]> edges) {
+        int n = terms.size();
+        Map<String, Integer> loaded = new HashMap<>();
+        for (int i = 0; i < n; ++i) {
+            loaded.put((String) terms.get(i)[0], i);
+        }
+
+        /* parents and children as adjacency lists in loaded order */
+        int[] numParents = new int[n];
+        List<List<Integer>> parents = new ArrayList<>(n);
+        List<List<Integer>> children = new ArrayList<>(n);
+        for (int i = 0; i < n; ++i) {
+            parents.add(new ArrayList<Integer>(2));
+            children.add(new ArrayList<Integer>(4));
+        }
+        for (Object[] e : edges) {
+            Integer c = loaded.get((String) e[0]), p = loaded.get((String) e[1]);
+            if (c != null && p != null && !c.equals(p)) {
+                parents.get(c).add(p);
+                children.get(p).add(c);
+                ++numParents[c];
+            }
+        }
+
+        /* Kahn's algorithm; order[k] is the loaded index of term k */
+        int[] order = new int[n];
+        int head = 0, tail = 0;
+        for (int i = 0; i < n; ++i) {
+            if (numParents[i] == 0) {
+                order[tail++] = i;
+            }
+        }
+        while (head < tail) {
+            for (int c : children.get(order[head++])) {
+                if (--numParents[c] == 0) {
+                    order[tail++] = c;
+                }
+            }
+        }
+        if (tail < n) {
+            System.err.println("Ontology has " + (n - tail)
+                    + " terms in cycles; ignoring their ancestors");
+            for (int i = 0; i < n; ++i) {
+                if (numParents[i] > 0) {
+                    parents.get(i).clear();
+                    order[tail++] = i;
+                }
+            }
+        }
+
+        Snapshot s = new Snapshot();
+        s.ids = new String[n];
+        s.names = new String[n];
+        s.depths = new int[n];
+        s.offsets = new int[n + 1];
+        s.index = new HashMap<>();
+        int[] number = new int[n];
+        for (int k = 0; k < n; ++k) {
+            number[order[k]] = k;
+        }
+
+        /* the closure of a term is the union of those of its parents */
+        int[] ancestors = new int[Math.max(16, n * 8)];
+        int[] merged = new int[16];
+        int[] mark = new int[n];
+        Arrays.fill(mark, -1);
+        int size = 0;
+        for (int k = 0; k < n; ++k) {
+            Object[] t = terms.get(order[k]);
+            s.ids[k] = (String) t[0];
+            s.names[k] = (String) t[1];
+            s.index.put(s.ids[k], k);
+
+            int m = 0, depth = -1;
+            for (int p : parents.get(order[k])) {
+                int a = number[p];
+                for (int x = s.offsets[a], e = s.offsets[a + 1]; x < e; ++x) {
+                    int b = ancestors[x];
+                    if (mark[b] != k) {
+                        mark[b] = k;
+                        if (m == merged.length) {
+                            merged = Arrays.copyOf(merged, m * 2);
+                        }
+                        merged[m++] = b;
+                    }
+                }
+                if (depth == -1 || s.depths[a] + 1 < depth) {
+                    depth = s.depths[a] + 1;
+                }
+            }
+            Arrays.sort(merged, 0, m);
+            if (size + m + 1 > ancestors.length) {
+                ancestors = Arrays.copyOf(ancestors,
+                        Math.max(ancestors.length * 2, size + m + 1));
+            }
+            System.arraycopy(merged, 0, ancestors, size, m);
+            size += m;
+            ancestors[size++] = k;
+            s.offsets[k + 1] = size;
+            s.depths[k] = depth == -1 ? 0 : depth;
+            s.maxDepth = Math.max(s.maxDepth, s.depths[k]);
+        }
+        s.ancestors = Arrays.copyOf(ancestors, size);
+        return s;
+    }
+
+    private static class Snapshot {
+
+        Map<String, Integer> index;
+        String[] ids;
+        String[] names;
+        int[] depths;
+        int maxDepth;
+        int[] offsets;
+        int[] ancestors;
+    }
+}
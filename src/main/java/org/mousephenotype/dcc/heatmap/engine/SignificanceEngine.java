@@ -0,0 +1,165 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.engine;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import org.mousephenotype.dcc.heatmap.entities.AggregatedSignificance;
+import org.mousephenotype.dcc.heatmap.persistence.DatasetListener;
+import org.mousephenotype.dcc.heatmap.persistence.PersistenceManager;
+
+/**
+ * Resident copy of the aggregated significance for every heatmap view.
+ *
+ * The significance is read from the pre-aggregated significance table (see
+ * SignificanceRefresher) once per load, instead of once per heatmap
+ * request. A load builds a new snapshot of tables, which then replaces the
+ * current snapshot in one step; hence, requests never see a partially
+ * loaded engine. The engine is reloaded whenever the dataset
+ * monitor detects a new dataset version.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class SignificanceEngine implements DatasetListener {
+
+    private final PersistenceManager pm;
+    private volatile Snapshot snapshot;
+
+    public SignificanceEngine(PersistenceManager pm) {
+        this.pm = pm;
+    }
+
+    /**
+     * Returns the table for the procedural heatmap. If type is null, rows
+     * are procedure types; otherwise, rows are parameters.
+     */
+    public SignificanceTable getProceduralTable(Integer type) {
+        Snapshot s = getSnapshot();
+        return type == null ? s.procedureTypes : s.parameters;
+    }
+
+    /**
+     * Returns the table for the ontological heatmap. If type is null, rows
+     * are top-level MP terms; otherwise, rows are the MP terms under the
+     * top-level MP term identified by type.
+     */
+    public SignificanceTable getOntologicalTable(String type) {
+        Snapshot s = getSnapshot();
+        if (type == null) {
+            return s.topLevelTerms;
+        }
+        SignificanceTable t = s.terms.get(type);
+        return t == null ? SignificanceTable.EMPTY : t;
+    }
+
+    public synchronized void reload() {
+        long start = System.currentTimeMillis();
+        snapshot = load();
+        System.out.println("Significance engine was loaded in "
+                + (System.currentTimeMillis() - start) + " ms at "
+                + new java.util.Date());
+    }
+
+    @Override
+    public void datasetChanged(long version) {
+        reload();
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot s = snapshot;
+        if (s == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    reload();
+                }
+                s = snapshot;
+            }
+        }
+        return s;
+    }
+
+    private Snapshot load() {
+        EntityManager em = pm.getEntityManagerFactory().createEntityManager();
+        try {
+            Snapshot s = new Snapshot();
+            s.procedureTypes = loadTable(em,
+                    AggregatedSignificance.PROCEDURE_TYPE);
+            s.parameters = loadTable(em,
+                    AggregatedSignificance.PARAMETER);
+            s.topLevelTerms = loadTable(em,
+                    AggregatedSignificance.TOP_LEVEL_TERM);
+            s.terms = loadGroupedTables(em,
+                    AggregatedSignificance.TERM);
+            return s;
+        } finally {
+            em.close();
+        }
+    }
+
+    /* each result is: key, genotype id, followed by the eight p-values */
+    private SignificanceTable loadTable(EntityManager em, int dimension) {
+        TypedQuery<Object[]> query = em.createNamedQuery(
+                "AggregatedSignificance.findByDimension", Object[].class);
+        query.setParameter("dimension", dimension);
+        SignificanceTable.Builder builder = new SignificanceTable.Builder();
+        Iterator<Object[]> i = query.getResultList().iterator();
+        while (i.hasNext()) {
+            Object[] row = i.next();
+            builder.add(row[0].toString(), (Integer) row[1], row, 2);
+        }
+        return builder.build();
+    }
+
+    /* each result is: group, key, genotype id, followed by the p-values */
+    private Map<String, SignificanceTable> loadGroupedTables(
+            EntityManager em, int dimension) {
+        TypedQuery<Object[]> query = em.createNamedQuery(
+                "AggregatedSignificance.findGroupedByDimension", Object[].class);
+        query.setParameter("dimension", dimension);
+        Map<String, SignificanceTable> tables = new HashMap<>();
+        List<Object[]> rows = query.getResultList();
+        SignificanceTable.Builder builder = null;
+        String group = null;
+        Iterator<Object[]> i = rows.iterator();
+        while (i.hasNext()) {
+            Object[] row = i.next();
+            if (!row[0].equals(group)) {
+                if (builder != null) {
+                    tables.put(group, builder.build());
+                }
+                group = row[0].toString();
+                builder = new SignificanceTable.Builder();
+            }
+            builder.add(row[1].toString(), (Integer) row[2], row, 3);
+        }
+        if (builder != null) {
+            tables.put(group, builder.build());
+        }
+        return tables;
+    }
+
+    private static class Snapshot {
+
+        SignificanceTable procedureTypes;
+        SignificanceTable parameters;
+        SignificanceTable topLevelTerms;
+        Map<String, SignificanceTable> terms;
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.engine;
+
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Query;
+import org.mousephenotype.dcc.heatmap.persistence.DatasetListener;
+import org.mousephenotype.dcc.heatmap.persistence.PersistenceManager;
+
+/**
+ * Keeps the pre-aggregated significance table in phenodcc_heatmap up to
+ * date with the annotations.
+ *
+ * Annotations are appended by the analysis runs, so the refresher records
+ * the highest annotation_id it has processed. On refresh, only the (row
+ * key, genotype) pairs touched by newer annotations are deleted and
+ * re-aggregated, together with the new high-water mark, in one transaction.
+ * Readers therefore see either the old or the new significance.
+ *
+ * If the annotation count shows that annotations were deleted or replaced,
+ * or the parameter/procedure associations changed, the table is rebuilt
+ * into a staging table instead, which then replaces the live table with a
+ * single RENAME TABLE.
+ *
+ * The refresher must be registered with the dataset monitor before the
+ * significance engine, so that the engine loads the refreshed table.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class SignificanceRefresher implements DatasetListener {
+
+    private static final String TABLE = "phenodcc_heatmap.significance";
+    private static final String STAGING = "phenodcc_heatmap.significance_next";
+    private static final String RETIRED = "phenodcc_heatmap.significance_old";
+    private static final String STATE = "phenodcc_heatmap.significance_state";
+
+    /* same reduction as the details queries, per (key, genotype) */
+    private static final String PVALUES =
+            "min(a.pvalue_double), "
+            + "min(case a.zygosity when 1 then a.pvalue_double else 9999.0 end), "
+            + "min(case a.zygosity when 0 then a.pvalue_double else 9999.0 end), "
+            + "min(case a.zygosity when 2 then a.pvalue_double else 9999.0 end), "
+            + "min(a.pvalue_sex), "
+            + "min(case a.zygosity when 1 then a.pvalue_sex else 9999.0 end), "
+            + "min(case a.zygosity when 0 then a.pvalue_sex else 9999.0 end), "
+            + "min(case a.zygosity when 2 then a.pvalue_sex else 9999.0 end)";
+
+    private static final String COLUMNS = "(dimension, group_key, row_key, "
+            + "genotype_id, pvalue, hom_pvalue, het_pvalue, hem_pvalue, "
+            + "sex_pvalue, hom_sex_pvalue, het_sex_pvalue, hem_sex_pvalue)";
+
+    private static final String PARAMETERS =
+            " join phenodcc_heatmap.parameters_for_procedure_type p"
+            + " on (a.parameterId = p.parameter_key)";
+
+    /* one for each dimension in AggregatedSignificance */
+    private static final Aggregation[] AGGREGATIONS = {
+        new Aggregation(0, null, "cast(p.procedure_type as char)", PARAMETERS, ""),
+        new Aggregation(1, null, "p.parameter_key", PARAMETERS, ""),
+        new Aggregation(2, null, "a.`2y_MP`", "",
+                " and a.`2y_MP` is not null"),
+        new Aggregation(3, "a.`2y_MP`", "a.`1y_MP`", "",
+                " and a.`2y_MP` is not null and a.`1y_MP` is not null")
+    };
+
+    private final PersistenceManager pm;
+
+    public SignificanceRefresher(PersistenceManager pm) {
+        this.pm = pm;
+    }
+
+    @Override
+    public void datasetChanged(long version) {
+        refresh();
+    }
+
+    public synchronized void refresh() {
+        long start = System.currentTimeMillis();
+        EntityManager em = pm.getEntityManagerFactory().createEntityManager();
+        try {
+            Object[] current = (Object[]) em.createNativeQuery(
+                    "select count(*), coalesce(max(annotation_id), 0)"
+                    + " from phenodcc_annotations.annotation")
+                    .getSingleResult();
+            long count = ((Number) current[0]).longValue();
+            long last = ((Number) current[1]).longValue();
+            String parameters = getParametersSignature(em);
+
+            List<?> state = em.createNativeQuery(
+                    "select last_annotation_id, annotation_count,"
+                    + " parameters_signature from " + STATE + " where id = 1")
+                    .getResultList();
+            if (state.isEmpty()) {
+                rebuild(em, last, count, parameters);
+            } else {
+                Object[] s = (Object[]) state.get(0);
+                long previousLast = ((Number) s[0]).longValue();
+                long previousCount = ((Number) s[1]).longValue();
+                if (!parameters.equals(s[2])
+                        || count != previousCount
+                        + countAppended(em, previousLast)) {
+                    rebuild(em, last, count, parameters);
+                } else if (last > previousLast) {
+                    update(em, previousLast, last, count, parameters);
+                } else {
+                    return;
+                }
+            }
+        } finally {
+            em.close();
+        }
+        System.out.println("Significance table was refreshed in "
+                + (System.currentTimeMillis() - start) + " ms at "
+                + new java.util.Date());
+    }
+
+    /* re-aggregates the pairs touched by annotations above the mark */
+    private void update(EntityManager em, long from, long last, long count,
+            String parameters) {
+        EntityTransaction t = em.getTransaction();
+        t.begin();
+        try {
+            for (Aggregation g : AGGREGATIONS) {
+                String affected = g.getAffected(from);
+                em.createNativeQuery("delete s from " + TABLE + " s"
+                        + " join (" + affected + ") x"
+                        + " on (s.dimension = " + g.dimension
+                        + " and s.group_key = x.g and s.row_key = x.r"
+                        + " and s.genotype_id = x.i)").executeUpdate();
+                em.createNativeQuery("insert into " + TABLE + " " + COLUMNS
+                        + " " + g.getSelect(" join (" + affected + ") x"
+                        + " on (" + g.group + " = x.g and " + g.row
+                        + " = x.r and a.genotypeId = x.i)")).executeUpdate();
+            }
+            setState(em, last, count, parameters);
+            t.commit();
+        } finally {
+            if (t.isActive()) {
+                t.rollback();
+            }
+        }
+    }
+
+    private void rebuild(EntityManager em, long last, long count,
+            String parameters) {
+        execute(em, "drop table if exists " + STAGING);
+        execute(em, "create table " + STAGING + " like " + TABLE);
+        for (Aggregation g : AGGREGATIONS) {
+            execute(em, "insert into " + STAGING + " " + COLUMNS
+                    + " " + g.getSelect(""));
+        }
+        execute(em, "rename table " + TABLE + " to " + RETIRED
+                + ", " + STAGING + " to " + TABLE);
+        execute(em, "drop table " + RETIRED);
+
+        /* if we fail before this, the next update redoes the same pairs */
+        EntityTransaction t = em.getTransaction();
+        t.begin();
+        try {
+            setState(em, last, count, parameters);
+            t.commit();
+        } finally {
+            if (t.isActive()) {
+                t.rollback();
+            }
+        }
+    }
+
+    private long countAppended(EntityManager em, long from) {
+        Query q = em.createNativeQuery("select count(*) from"
+                + " phenodcc_annotations.annotation where annotation_id > ?1");
+        q.setParameter(1, from);
+        return ((Number) q.getSingleResult()).longValue();
+    }
+
+    private String getParametersSignature(EntityManager em) {
+        Object[] r = (Object[]) em.createNativeQuery(
+                "select count(*), coalesce(max(id), 0)"
+                + " from phenodcc_heatmap.parameters_for_procedure_type")
+                .getSingleResult();
+        return r[0] + ":" + r[1];
+    }
+
+    private void setState(EntityManager em, long last, long count,
+            String parameters) {
+        Query q = em.createNativeQuery("replace into " + STATE
+                + " (id, last_annotation_id, annotation_count,"
+                + " parameters_signature) values (1, ?1, ?2, ?3)");
+        q.setParameter(1, last);
+        q.setParameter(2, count);
+        q.setParameter(3, parameters);
+        q.executeUpdate();
+    }
+
+    private void execute(EntityManager em, String sql) {
+        EntityTransaction t = em.getTransaction();
+        t.begin();
+        try {
+            em.createNativeQuery(sql).executeUpdate();
+            t.commit();
+        } finally {
+            if (t.isActive()) {
+                t.rollback();
+            }
+        }
+    }
+
+    /**
+     * The SQL expressions that reduce the annotations for one dimension.
+     * The group expression is the empty string literal for the dimensions
+     * that are not grouped.
+     */
+    private static class Aggregation {
+
+        final int dimension;
+        final String group;
+        final String row;
+        final String join;
+        final String condition;
+
+        Aggregation(int dimension, String group, String row, String join,
+                String condition) {
+            this.dimension = dimension;
+            this.group = group == null ? "''" : group;
+            this.row = row;
+            this.join = join;
+            this.condition = condition;
+        }
+
+        String getSelect(String restriction) {
+            return "select " + dimension + ", " + group + ", " + row
+                    + ", a.genotypeId, " + PVALUES
+                    + " from phenodcc_annotations.annotation a" + join
+                    + restriction
+                    + " where a.genotypeId is not null" + condition
+                    + " group by " + ("''".equals(group) ? "" : group + ", ")
+                    + row + ", a.genotypeId";
+        }
+
+        /* the (group, row, genotype) triples touched after the mark */
+        String getAffected(long from) {
+            return "select distinct " + group + " as g, " + row + " as r,"
+                    + " a.genotypeId as i"
+                    + " from phenodcc_annotations.annotation a" + join
+                    + " where a.annotation_id > " + from
+                    + " and a.genotypeId is not null" + condition;
+        }
+    }
+}
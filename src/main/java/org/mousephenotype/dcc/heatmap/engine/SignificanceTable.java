@@ -0,0 +1,396 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import org.mousephenotype.dcc.heatmap.entities.ColumnEntry;
+import org.mousephenotype.dcc.heatmap.entities.RowEntry;
+import org.mousephenotype.dcc.heatmap.entities.SignificanceEntry;
+import org.mousephenotype.dcc.heatmap.entities.SparseCell;
+
+/**
+ * Immutable column store of aggregated significance for one heatmap view.
+ *
+ * Cells are grouped by genotype: the cells of the genotype at slot i occupy
+ * positions offsets[i] to offsets[i + 1] - 1, sorted by row key index. The
+ * eight p-values of a cell are held in separate primitive columns, in the
+ * same order as the arguments of the SignificanceEntry constructor. Missing
+ * p-values are stored as NaN.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class SignificanceTable {
+
+    public static final int PVALUE = 0;
+    public static final int HOM_PVALUE = 1;
+    public static final int HET_PVALUE = 2;
+    public static final int HEM_PVALUE = 3;
+    public static final int SEX_PVALUE = 4;
+    public static final int HOM_SEX_PVALUE = 5;
+    public static final int HET_SEX_PVALUE = 6;
+    public static final int HEM_SEX_PVALUE = 7;
+    public static final int NUM_PVALUES = 8;
+    public static final double NO_THRESHOLD = Double.POSITIVE_INFINITY;
+    public static final SignificanceTable EMPTY = new Builder().build();
+    /* shared by every cell without data; never modified */
+    public static final SignificanceEntry MISSING = new SignificanceEntry(
+            -1.0, -1.0, -1.0, -1.0, -1.0, -1.0, -1.0, -1.0);
+
+    private final String[] keys;
+    private final HashMap<String, Integer> keyIndex;
+    private final int[] genotypeIds;
+    private final IntIndexMap slots;
+    private final int[] offsets;
+    private final int[] cellKeys;
+    private final double[][] pvalues;
+
+    private SignificanceTable(String[] keys, HashMap<String, Integer> keyIndex,
+            int[] genotypeIds, int[] offsets, int[] cellKeys,
+            double[][] pvalues) {
+        this.keys = keys;
+        this.keyIndex = keyIndex;
+        this.genotypeIds = genotypeIds;
+        this.slots = new IntIndexMap(genotypeIds.length);
+        for (int slot = 0; slot < genotypeIds.length; ++slot) {
+            slots.put(genotypeIds[slot], slot);
+        }
+        this.offsets = offsets;
+        this.cellKeys = cellKeys;
+        this.pvalues = pvalues;
+    }
+
+    public int getNumKeys() {
+        return keys.length;
+    }
+
+    public String getKey(int keyIndex) {
+        return keys[keyIndex];
+    }
+
+    public int getNumGenotypes() {
+        return genotypeIds.length;
+    }
+
+    public int getNumCells() {
+        return cellKeys.length;
+    }
+
+    /**
+     * Returns the index of the supplied row key, or -1 if the table has no
+     * cells for that key.
+     */
+    public int keyIndexOf(String key) {
+        Integer i = keyIndex.get(key);
+        return i == null ? -1 : i;
+    }
+
+    /**
+     * Returns the slot of the supplied genotype, or -1 if the table has no
+     * cells for that genotype.
+     */
+    public int slotOf(int genotypeId) {
+        return slots.get(genotypeId);
+    }
+
+    public int getFirstCell(int slot) {
+        return offsets[slot];
+    }
+
+    public int getLastCell(int slot) {
+        return offsets[slot + 1];
+    }
+
+    public int getCellKey(int cell) {
+        return cellKeys[cell];
+    }
+
+    public double getPvalue(int cell, int which) {
+        return pvalues[which][cell];
+    }
+
+    /**
+     * Returns the cell for the supplied genotype slot and key index, or -1 if
+     * there is no such cell.
+     */
+    public int find(int slot, int key) {
+        int cell = Arrays.binarySearch(cellKeys, offsets[slot],
+                offsets[slot + 1], key);
+        return cell < 0 ? -1 : cell;
+    }
+
+    /**
+     * Returns true if either the overall or the sex p-value of the cell is
+     * below the supplied threshold. Every cell passes NO_THRESHOLD.
+     */
+    public boolean isBelow(int cell, double threshold) {
+        return threshold == NO_THRESHOLD
+                || pvalues[PVALUE][cell] < threshold
+                || pvalues[SEX_PVALUE][cell] < threshold;
+    }
+
+    public SignificanceEntry getEntry(int cell) {
+        return new SignificanceEntry(
+                box(pvalues[PVALUE][cell]),
+                box(pvalues[HOM_PVALUE][cell]),
+                box(pvalues[HET_PVALUE][cell]),
+                box(pvalues[HEM_PVALUE][cell]),
+                box(pvalues[SEX_PVALUE][cell]),
+                box(pvalues[HOM_SEX_PVALUE][cell]),
+                box(pvalues[HET_SEX_PVALUE][cell]),
+                box(pvalues[HEM_SEX_PVALUE][cell]));
+    }
+
+    /**
+     * Maps the supplied rows to key indices. Rows that have no cells in
+     * this table are mapped to -1.
+     */
+    public int[] getKeyIndices(List<RowEntry> rows) {
+        int nrow = rows.size();
+        int[] indices = new int[nrow];
+        for (int i = 0; i < nrow; ++i) {
+            indices[i] = keyIndexOf(rows.get(i).getKey());
+        }
+        return indices;
+    }
+
+    /**
+     * Returns the dense significance matrix for the supplied row and column
+     * headers. Cells without data share the MISSING entry, so only the
+     * populated cells are allocated.
+     */
+    public SignificanceEntry[][] toGrid(
+            List<RowEntry> rows,
+            List<ColumnEntry> columns) {
+        int i, j, nrow = rows.size(), ncol = columns.size();
+        int[] rowOfKey = getRowOfKey(rows);
+
+        SignificanceEntry[][] grid = new SignificanceEntry[nrow][ncol];
+        for (i = 0; i < nrow; ++i) {
+            Arrays.fill(grid[i], MISSING);
+        }
+
+        for (j = 0; j < ncol; ++j) {
+            int slot = slotOf(columns.get(j).getKey());
+            if (slot == -1) {
+                continue;
+            }
+            for (int c = offsets[slot], e = offsets[slot + 1]; c < e; ++c) {
+                i = rowOfKey[cellKeys[c]];
+                if (i != -1) {
+                    grid[i][j] = getEntry(c);
+                }
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Returns the significance for the supplied row and column headers as
+     * NUM_PVALUES planes of row-major float values. Cells without data, or
+     * not below the threshold, are filled with -1.0 p-values; null p-values
+     * are NaN.
+     */
+    public float[][] toPlanes(
+            List<RowEntry> rows,
+            List<ColumnEntry> columns,
+            double threshold) {
+        int i, j, nrow = rows.size(), ncol = columns.size();
+        int[] rowOfKey = getRowOfKey(rows);
+
+        float[][] planes = new float[NUM_PVALUES][nrow * ncol];
+        for (int p = 0; p < NUM_PVALUES; ++p) {
+            Arrays.fill(planes[p], -1.0f);
+        }
+
+        for (j = 0; j < ncol; ++j) {
+            int slot = slotOf(columns.get(j).getKey());
+            if (slot == -1) {
+                continue;
+            }
+            for (int c = offsets[slot], e = offsets[slot + 1]; c < e; ++c) {
+                i = rowOfKey[cellKeys[c]];
+                if (i != -1 && isBelow(c, threshold)) {
+                    for (int p = 0; p < NUM_PVALUES; ++p) {
+                        planes[p][i * ncol + j] = (float) pvalues[p][c];
+                    }
+                }
+            }
+        }
+        return planes;
+    }
+
+    /**
+     * Returns only the populated cells for the supplied row and column
+     * headers that are below the threshold, ordered by column and then by
+     * key index.
+     */
+    public List<SparseCell> toCells(
+            List<RowEntry> rows,
+            List<ColumnEntry> columns,
+            double threshold) {
+        int i, j, ncol = columns.size();
+        int[] rowOfKey = getRowOfKey(rows);
+
+        List<SparseCell> cells = new ArrayList<>();
+        for (j = 0; j < ncol; ++j) {
+            int slot = slotOf(columns.get(j).getKey());
+            if (slot == -1) {
+                continue;
+            }
+            for (int c = offsets[slot], e = offsets[slot + 1]; c < e; ++c) {
+                i = rowOfKey[cellKeys[c]];
+                if (i != -1 && isBelow(c, threshold)) {
+                    cells.add(new SparseCell(i, j,
+                            box(pvalues[PVALUE][c]),
+                            box(pvalues[HOM_PVALUE][c]),
+                            box(pvalues[HET_PVALUE][c]),
+                            box(pvalues[HEM_PVALUE][c]),
+                            box(pvalues[SEX_PVALUE][c]),
+                            box(pvalues[HOM_SEX_PVALUE][c]),
+                            box(pvalues[HET_SEX_PVALUE][c]),
+                            box(pvalues[HEM_SEX_PVALUE][c])));
+                }
+            }
+        }
+        return cells;
+    }
+
+    /* inverse of getKeyIndices(): maps key index to row, or -1 */
+    private int[] getRowOfKey(List<RowEntry> rows) {
+        int[] rowOfKey = new int[keys.length];
+        Arrays.fill(rowOfKey, -1);
+        for (int i = 0, nrow = rows.size(); i < nrow; ++i) {
+            int k = keyIndexOf(rows.get(i).getKey());
+            if (k != -1) {
+                rowOfKey[k] = i;
+            }
+        }
+        return rowOfKey;
+    }
+
+    private static Double box(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+
+    /**
+     * Accumulates cells in non-decreasing order of genotype identifier, as
+     * returned by the significance loading queries.
+     */
+    static class Builder {
+
+        private final HashMap<String, Integer> keyIndex = new HashMap<>();
+        private String[] keys = new String[64];
+        private int[] genotypeIds = new int[256];
+        private int[] offsets = new int[257];
+        private int[] cellKeys = new int[1024];
+        private double[][] pvalues = new double[NUM_PVALUES][1024];
+        private int numGenotypes = 0;
+        private int numCells = 0;
+
+        /**
+         * Adds a cell using the aggregated p-values in row[first] to
+         * row[first + NUM_PVALUES - 1].
+         */
+        void add(String key, int genotypeId, Object[] row, int first) {
+            if (numGenotypes == 0
+                    || genotypeIds[numGenotypes - 1] != genotypeId) {
+                if (numGenotypes > 0
+                        && genotypeIds[numGenotypes - 1] > genotypeId) {
+                    throw new IllegalStateException(
+                            "Significance must be ordered by genotype");
+                }
+                if (numGenotypes == genotypeIds.length) {
+                    genotypeIds = Arrays.copyOf(genotypeIds, numGenotypes * 2);
+                    offsets = Arrays.copyOf(offsets, numGenotypes * 2 + 1);
+                }
+                offsets[numGenotypes] = numCells;
+                genotypeIds[numGenotypes++] = genotypeId;
+            }
+            if (numCells == cellKeys.length) {
+                cellKeys = Arrays.copyOf(cellKeys, numCells * 2);
+                for (int p = 0; p < NUM_PVALUES; ++p) {
+                    pvalues[p] = Arrays.copyOf(pvalues[p], numCells * 2);
+                }
+            }
+            cellKeys[numCells] = indexKey(key);
+            for (int p = 0; p < NUM_PVALUES; ++p) {
+                Object v = row[first + p];
+                pvalues[p][numCells] = v == null
+                        ? Double.NaN : ((Number) v).doubleValue();
+            }
+            ++numCells;
+        }
+
+        private int indexKey(String key) {
+            Integer i = keyIndex.get(key);
+            if (i == null) {
+                i = keyIndex.size();
+                if (i == keys.length) {
+                    keys = Arrays.copyOf(keys, i * 2);
+                }
+                keys[i] = key;
+                keyIndex.put(key, i);
+            }
+            return i;
+        }
+
+        SignificanceTable build() {
+            offsets[numGenotypes] = numCells;
+            for (int g = 0; g < numGenotypes; ++g) {
+                sortCells(offsets[g], offsets[g + 1]);
+            }
+            double[][] columns = new double[NUM_PVALUES][];
+            for (int p = 0; p < NUM_PVALUES; ++p) {
+                columns[p] = Arrays.copyOf(pvalues[p], numCells);
+            }
+            return new SignificanceTable(
+                    Arrays.copyOf(keys, keyIndex.size()),
+                    new HashMap<>(keyIndex),
+                    Arrays.copyOf(genotypeIds, numGenotypes),
+                    Arrays.copyOf(offsets, numGenotypes + 1),
+                    Arrays.copyOf(cellKeys, numCells),
+                    columns);
+        }
+
+        /* a genotype has at most a few hundred cells, so insertion sort */
+        private void sortCells(int from, int to) {
+            double[] temp = new double[NUM_PVALUES];
+            for (int i = from + 1; i < to; ++i) {
+                int key = cellKeys[i], j = i - 1;
+                if (cellKeys[j] <= key) {
+                    continue;
+                }
+                for (int p = 0; p < NUM_PVALUES; ++p) {
+                    temp[p] = pvalues[p][i];
+                }
+                while (j >= from && cellKeys[j] > key) {
+                    cellKeys[j + 1] = cellKeys[j];
+                    for (int p = 0; p < NUM_PVALUES; ++p) {
+                        pvalues[p][j + 1] = pvalues[p][j];
+                    }
+                    --j;
+                }
+                cellKeys[j + 1] = key;
+                for (int p = 0; p < NUM_PVALUES; ++p) {
+                    pvalues[p][j + 1] = temp[p];
+                }
+            }
+        }
+    }
+}
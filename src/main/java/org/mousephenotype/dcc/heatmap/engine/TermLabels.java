@@ -0,0 +1,155 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.engine;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import org.mousephenotype.dcc.heatmap.persistence.DatasetListener;
+import org.mousephenotype.dcc.heatmap.persistence.PersistenceManager;
+
+/**
+ * Resident dictionary of the display labels of MP terms.
+ *
+ * Row headers show the OLS term name, with spaced out slashes and without
+ * the trailing ' phenotype'; cell details show the IMPReSS MP term. Both
+ * are capitalised. The labels are normalised and interned once per dataset
+ * version, so that responses only look them up by MP identifier. The
+ * IMPReSS selection outcome of each MP term is kept with its label, since
+ * the details need both.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class TermLabels implements DatasetListener {
+
+    private final PersistenceManager pm;
+    private volatile Snapshot snapshot;
+
+    public TermLabels(PersistenceManager pm) {
+        this.pm = pm;
+    }
+
+    /**
+     * Returns the row header label of the supplied MP term, or null if the
+     * term is not in the ontology.
+     */
+    public String getRowLabel(String mpId) {
+        return getSnapshot().rowLabels.get(mpId);
+    }
+
+    /**
+     * Returns the IMPReSS label of the supplied MP term, or null if no
+     * parameter is annotated with the term.
+     */
+    public String getDetailsLabel(String mpId) {
+        return getSnapshot().detailsLabels.get(mpId);
+    }
+
+    /**
+     * Returns the IMPReSS selection outcome (e.g., 'INCREASED') of the
+     * supplied MP term, or null if there is none.
+     */
+    public String getSelectionOutcome(String mpId) {
+        return getSnapshot().selectionOutcomes.get(mpId);
+    }
+
+    /* MP term names as displayed in the row headers */
+    public static String toRowLabel(String termName) {
+        return capitalise(termName
+                .replaceAll("/", " / ")
+                .replaceFirst(" phenotype$", ""));
+    }
+
+    private static String capitalise(String term) {
+        return term.isEmpty()
+                ? term : term.substring(0, 1).toUpperCase() + term.substring(1);
+    }
+
+    public synchronized void reload() {
+        long start = System.currentTimeMillis();
+        snapshot = load();
+        System.out.println("Term labels were loaded in "
+                + (System.currentTimeMillis() - start) + " ms at "
+                + new java.util.Date());
+    }
+
+    @Override
+    public void datasetChanged(long version) {
+        reload();
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot s = snapshot;
+        if (s == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    reload();
+                }
+                s = snapshot;
+            }
+        }
+        return s;
+    }
+
+    private Snapshot load() {
+        EntityManager em = pm.getEntityManagerFactory().createEntityManager();
+        try {
+            Snapshot s = new Snapshot();
+
+            TypedQuery<Object[]> query = em.createNamedQuery(
+                    "Term.getNamesByPrefix", Object[].class);
+            query.setParameter("prefix", "MP:%");
+            Map<String, String> rowLabels = new HashMap<>();
+            for (Object[] t : query.getResultList()) {
+                rowLabels.put((String) t[0], toRowLabel((String) t[1]).intern());
+            }
+            s.rowLabels = Collections.unmodifiableMap(rowLabels);
+
+            /* as before, the first IMPReSS mapping of a term wins */
+            List<Object[]> mappings = em.createNamedQuery(
+                    "MPTermForGenotypeID.getAllMpTerms", Object[].class)
+                    .getResultList();
+            Map<String, String> detailsLabels = new HashMap<>();
+            Map<String, String> selectionOutcomes = new HashMap<>();
+            for (Object[] m : mappings) {
+                String mpId = (String) m[0];
+                if (mpId == null || m[1] == null
+                        || detailsLabels.containsKey(mpId)) {
+                    continue;
+                }
+                detailsLabels.put(mpId, capitalise((String) m[1]).intern());
+                if (m[2] != null) {
+                    selectionOutcomes.put(mpId, ((String) m[2]).intern());
+                }
+            }
+            s.detailsLabels = Collections.unmodifiableMap(detailsLabels);
+            s.selectionOutcomes = Collections.unmodifiableMap(selectionOutcomes);
+            return s;
+        } finally {
+            em.close();
+        }
+    }
+
+    private static class Snapshot {
+
+        Map<String, String> rowLabels;
+        Map<String, String> detailsLabels;
+        Map<String, String> selectionOutcomes;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.entities;
+
+import java.io.Serializable;
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Significance of a (row key, genotype) pair with the p-values already
+ * reduced from the annotations. The table is written by SignificanceRefresher
+ * and read, one dimension at a time, by SignificanceEngine only.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+@Entity
+@Table(name = "significance", catalog = "phenodcc_heatmap", schema = "")
+@XmlRootElement
+@NamedQueries({
+    @NamedQuery(name = "AggregatedSignificance.findByDimension", query = "select s.rowKey, s.genotypeId, s.pvalue, s.homPvalue, s.hetPvalue, s.hemPvalue, s.sexPvalue, s.homSexPvalue, s.hetSexPvalue, s.hemSexPvalue from AggregatedSignificance s where s.dimension = :dimension order by s.genotypeId"),
+    @NamedQuery(name = "AggregatedSignificance.findGroupedByDimension", query = "select s.groupKey, s.rowKey, s.genotypeId, s.pvalue, s.homPvalue, s.hetPvalue, s.hemPvalue, s.sexPvalue, s.homSexPvalue, s.hetSexPvalue, s.hemSexPvalue from AggregatedSignificance s where s.dimension = :dimension order by s.groupKey, s.genotypeId")})
+public class AggregatedSignificance implements Serializable {
+
+    public static final int PROCEDURE_TYPE = 0;
+    public static final int PARAMETER = 1;
+    public static final int TOP_LEVEL_TERM = 2;
+    public static final int TERM = 3;
+
+    @Id
+    @Basic(optional = false)
+    @NotNull
+    private Long id;
+    @Basic(optional = false)
+    @NotNull
+    private Integer dimension;
+    @Basic(optional = false)
+    @NotNull
+    @Column(name = "group_key")
+    private String groupKey;
+    @Basic(optional = false)
+    @NotNull
+    @Column(name = "row_key")
+    private String rowKey;
+    @Basic(optional = false)
+    @NotNull
+    @Column(name = "genotype_id")
+    private Integer genotypeId;
+    private Double pvalue;
+    @Column(name = "hom_pvalue")
+    private Double homPvalue;
+    @Column(name = "het_pvalue")
+    private Double hetPvalue;
+    @Column(name = "hem_pvalue")
+    private Double hemPvalue;
+    @Column(name = "sex_pvalue")
+    private Double sexPvalue;
+    @Column(name = "hom_sex_pvalue")
+    private Double homSexPvalue;
+    @Column(name = "het_sex_pvalue")
+    private Double hetSexPvalue;
+    @Column(name = "hem_sex_pvalue")
+    private Double hemSexPvalue;
+
+    public AggregatedSignificance() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Integer getDimension() {
+        return dimension;
+    }
+
+    public String getGroupKey() {
+        return groupKey;
+    }
+
+    public String getRowKey() {
+        return rowKey;
+    }
+
+    public Integer getGenotypeId() {
+        return genotypeId;
+    }
+
+    public Double getPvalue() {
+        return pvalue;
+    }
+
+    public Double getHomPvalue() {
+        return homPvalue;
+    }
+
+    public Double getHetPvalue() {
+        return hetPvalue;
+    }
+
+    public Double getHemPvalue() {
+        return hemPvalue;
+    }
+
+    public Double getSexPvalue() {
+        return sexPvalue;
+    }
+
+    public Double getHomSexPvalue() {
+        return homSexPvalue;
+    }
+
+    public Double getHetSexPvalue() {
+        return hetSexPvalue;
+    }
+
+    public Double getHemSexPvalue() {
+        return hemSexPvalue;
+    }
+}
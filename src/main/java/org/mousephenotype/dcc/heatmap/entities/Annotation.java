@@ -23,6 +23,8 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Lob;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 import javax.xml.bind.annotation.XmlRootElement;
 
@@ -33,6 +35,8 @@ import javax.xml.bind.annotation.XmlRootElement;
 @Entity
 @Table(name = "annotation", catalog = "phenodcc_annotations", schema = "")
 @XmlRootElement
+@NamedQueries({
+    @NamedQuery(name = "Annotation.getVersion", query = "select count(a.annotationId), max(a.annotationId) from Annotation a")})
 public class Annotation implements Serializable {
     
     @Id
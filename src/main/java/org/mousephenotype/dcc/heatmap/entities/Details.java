@@ -91,7 +91,7 @@ public class Details implements Serializable, Comparable<Details> {
     }
 
     public void setMpTerm(String term) {
-        this.mpTerm = term.substring(0, 1).toUpperCase() + term.substring(1);
+        this.mpTerm = term;
     }
 
     @XmlElement(name = "s")
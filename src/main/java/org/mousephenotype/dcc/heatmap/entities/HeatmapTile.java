@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.entities;
+
+import java.util.List;
+import javax.xml.bind.annotation.XmlElement;
+
+/**
+ * A rectangular window of a heatmap. The headers only cover the window, and
+ * the row and column of each cell are relative to the window, which starts
+ * at (row, column) of a matrix with numRows by numColumns cells.
+ *
+ * The rows and columns of the matrix are in the same order as in the full
+ * heatmap, which does not change until the dataset version changes; hence,
+ * tiles with the same version can be placed next to each other.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class HeatmapTile extends SparseHeatmap {
+
+    private long version;
+    private int row;
+    private int column;
+    private int numRows;
+    private int numColumns;
+
+    public HeatmapTile(String title, List<RowEntry> rowEntries,
+            List<ColumnEntry> columnEntries, List<SparseCell> cells,
+            long version, int row, int column, int numRows, int numColumns) {
+        super(title, rowEntries, columnEntries, cells);
+        this.version = version;
+        this.row = row;
+        this.column = column;
+        this.numRows = numRows;
+        this.numColumns = numColumns;
+    }
+
+    @XmlElement(name = "version")
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    @XmlElement(name = "row")
+    public int getRow() {
+        return row;
+    }
+
+    public void setRow(int row) {
+        this.row = row;
+    }
+
+    @XmlElement(name = "column")
+    public int getColumn() {
+        return column;
+    }
+
+    public void setColumn(int column) {
+        this.column = column;
+    }
+
+    @XmlElement(name = "nrow")
+    public int getNumRows() {
+        return numRows;
+    }
+
+    public void setNumRows(int numRows) {
+        this.numRows = numRows;
+    }
+
+    @XmlElement(name = "ncol")
+    public int getNumColumns() {
+        return numColumns;
+    }
+
+    public void setNumColumns(int numColumns) {
+        this.numColumns = numColumns;
+    }
+}
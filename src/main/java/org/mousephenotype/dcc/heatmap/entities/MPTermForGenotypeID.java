@@ -33,13 +33,14 @@ import javax.xml.bind.annotation.XmlRootElement;
 @Table(name = "annotation", catalog = "phenodcc_annotations", schema = "")
 @XmlRootElement
 @NamedQueries({
+    @NamedQuery(name = "MPTermForGenotypeID.getOverviewVersion", query = "select count(g.genotypeId), max(g.genotypeId) from Genotype g"),
+    @NamedQuery(name = "MPTermForGenotypeID.getMpTermVersion", query = "select count(m), max(m.mpId) from ParamMpterm m"),
     @NamedQuery(name = "MPTermForGenotypeID.getRowEntriesTyped", query = "select distinct new org.mousephenotype.dcc.heatmap.entities.RowEntry(a.yMP, t.termName) from Annotation a, Term t where a.yMP1 = :type and a.yMP is not null and a.yMP = t.identifier order by t.termName"),
     @NamedQuery(name = "MPTermForGenotypeID.getRowEntriesUntyped", query = "select distinct new org.mousephenotype.dcc.heatmap.entities.RowEntry(a.yMP1, t.termName) from Annotation a, Term t where a.yMP1 is not null and a.yMP1 = t.identifier order by t.termName"),
-    @NamedQuery(name = "MPTermForGenotypeID.getColumnEntriesFilter", query = "select distinct g from ProceduresPerformed p, Genotype g where g.genotypeId <> 0 and p.genotypeId = g.genotypeId and g.geneSymbol is not null and g.geneSymbol <> 'null' and g.geneSymbol like :filter order by g.geneSymbol, g.genotypeId"),
     @NamedQuery(name = "MPTermForGenotypeID.getColumnEntriesMgiId", query = "select distinct g from ProceduresPerformed p, Genotype g where g.geneId = :mgiId and g.genotypeId <> 0 and p.genotypeId = g.genotypeId and g.geneSymbol is not null and g.geneSymbol <> 'null' order by g.geneSymbol, g.genotypeId"),
-    @NamedQuery(name = "MPTermForGenotypeID.getSignificanceFilterUntyped", query = "select new org.mousephenotype.dcc.heatmap.entities.Significance(a.yMP1, a.genotypeId, min(a.pvalueDouble), min(case a.zygosity when 1 then a.pvalueDouble else 9999.0 end), min(case a.zygosity when 0 then a.pvalueDouble else 9999.0 end), min(case a.zygosity when 2 then a.pvalueDouble else 9999.0 end), min(a.pvalueSex), min(case a.zygosity when 1 then a.pvalueSex else 9999.0 end), min(case a.zygosity when 0 then a.pvalueSex else 9999.0 end), min(case a.zygosity when 2 then a.pvalueSex else 9999.0 end)) from Annotation a where a.genotypeId in :genotypeIds and a.yMP1 in :mpterms group by a.yMP1, a.genotypeId order by a.yMP1, a.genotypeId"),
-    @NamedQuery(name = "MPTermForGenotypeID.getSignificanceFilterTyped", query = "select new org.mousephenotype.dcc.heatmap.entities.Significance(a.yMP, a.genotypeId, min(a.pvalueDouble), min(case a.zygosity when 1 then a.pvalueDouble else 9999.0 end), min(case a.zygosity when 0 then a.pvalueDouble else 9999.0 end), min(case a.zygosity when 2 then a.pvalueDouble else 9999.0 end), min(a.pvalueSex), min(case a.zygosity when 1 then a.pvalueSex else 9999.0 end), min(case a.zygosity when 0 then a.pvalueSex else 9999.0 end), min(case a.zygosity when 2 then a.pvalueSex else 9999.0 end)) from Annotation a where a.yMP1 = :type and a.genotypeId in :genotypeIds and a.yMP in :mpterms group by a.yMP, a.genotypeId order by a.yMP, a.genotypeId"),
-    @NamedQuery(name = "MPTermForGenotypeID.getDetails", query = "select distinct new org.mousephenotype.dcc.heatmap.entities.Details(p.parameterKey, p.parameterName, a.zygosity, min(a.pvalueDouble), min(case a.zygosity when 1 then a.pvalueDouble else 9999.0 end), min(case a.zygosity when 0 then a.pvalueDouble else 9999.0 end), min(case a.zygosity when 2 then a.pvalueDouble else 9999.0 end), min(a.pvalueSex), min(case a.zygosity when 1 then a.pvalueSex else 9999.0 end), min(case a.zygosity when 0 then a.pvalueSex else 9999.0 end), min(case a.zygosity when 2 then a.pvalueSex else 9999.0 end), a.yMP) from Annotation a, ParametersForProcedureType p where a.parameterId = p.parameterKey and a.genotypeId = :genotypeId and (a.yMP1 = :type or a.yMP = :type) group by p.parameterKey, a.zygosity order by p.parameterName")})
+    @NamedQuery(name = "MPTermForGenotypeID.getAnnotatedTerms", query = "select a.yMP, min(a.pvalueDouble) from Annotation a where a.genotypeId = :genotypeId and a.yMP is not null group by a.yMP having min(a.pvalueDouble) < :threshold"),
+    @NamedQuery(name = "MPTermForGenotypeID.getAllMpTerms", query = "select m.mpId, m.mpTerm, m.selectionOutcome from ParamMpterm m"),
+    @NamedQuery(name = "MPTermForGenotypeID.getDetails", query = "select distinct new org.mousephenotype.dcc.heatmap.entities.Details(p.parameterKey, p.parameterName, a.zygosity, min(a.pvalueDouble), min(case a.zygosity when 1 then a.pvalueDouble else 9999.0 end), min(case a.zygosity when 0 then a.pvalueDouble else 9999.0 end), min(case a.zygosity when 2 then a.pvalueDouble else 9999.0 end), min(a.pvalueSex), min(case a.zygosity when 1 then a.pvalueSex else 9999.0 end), min(case a.zygosity when 0 then a.pvalueSex else 9999.0 end), min(case a.zygosity when 2 then a.pvalueSex else 9999.0 end), a.yMP) from Annotation a, ParametersForProcedureType p where a.parameterId = p.parameterKey and a.genotypeId = :genotypeId and (a.yMP1 = :type or a.yMP = :type) group by p.parameterKey, a.zygosity having min(a.pvalueDouble) < :threshold or min(a.pvalueSex) < :threshold order by p.parameterName")})
 public class MPTermForGenotypeID implements Serializable {
 
     @Id
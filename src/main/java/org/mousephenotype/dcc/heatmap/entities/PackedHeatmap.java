@@ -0,0 +1,60 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.entities;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Heatmap where the significance is packed into eight planes of float32
+ * values, one plane for each p-value of a SignificanceEntry. Each plane
+ * holds nrow * ncol values in row-major order. Cells without data have -1.0
+ * p-values, and null p-values are NaN.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class PackedHeatmap implements Serializable {
+
+    public static final String MEDIA_TYPE = "application/x-dcc-heatmap";
+    private String title;
+    private List<RowEntry> rowEntries;
+    private List<ColumnEntry> columnEntries;
+    private float[][] planes;
+
+    public PackedHeatmap(String title, List<RowEntry> rowEntries,
+            List<ColumnEntry> columnEntries, float[][] planes) {
+        this.title = title;
+        this.rowEntries = rowEntries;
+        this.columnEntries = columnEntries;
+        this.planes = planes;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public List<RowEntry> getRowEntries() {
+        return rowEntries;
+    }
+
+    public List<ColumnEntry> getColumnEntries() {
+        return columnEntries;
+    }
+
+    public float[][] getPlanes() {
+        return planes;
+    }
+}
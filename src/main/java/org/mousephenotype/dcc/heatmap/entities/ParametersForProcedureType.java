@@ -38,15 +38,20 @@ import javax.xml.bind.annotation.XmlType;
 @XmlRootElement
 @XmlType(propOrder = {"i", "t", "k", "n"})
 @NamedQueries({
+    @NamedQuery(name = "ParametersForProcedureType.getVersion", query = "select count(p.id), max(p.id) from ParametersForProcedureType p"),
+    @NamedQuery(name = "ParametersForProcedureType.getProceduresPerformedVersion", query = "select count(p), max(p.genotypeId) from ProceduresPerformed p"),
+    @NamedQuery(name = "ParametersForProcedureType.getMeasurementsPerformedVersion", query = "select count(e), max(e.parameterId) from MeasurementsPerformed e"),
+    @NamedQuery(name = "ParametersForProcedureType.getCentreVersion", query = "select count(c.centreId), max(c.centreId) from ACentre c"),
+    @NamedQuery(name = "ParametersForProcedureType.getStrainVersion", query = "select count(s.strainId), max(s.strainId) from Strain s"),
+    @NamedQuery(name = "ParametersForProcedureType.findAllOrdered", query = "select p from ParametersForProcedureType p order by p.procedureType, p.id"),
+    @NamedQuery(name = "ParametersForProcedureType.getMeasuredParameterKeys", query = "select distinct e.parameterId from MeasurementsPerformed e, ParametersForProcedureType p where e.parameterId = p.parameterKey"),
     @NamedQuery(name = "ParametersForProcedureType.findByParameterKey", query = "select p from ParametersForProcedureType p where p.parameterKey = :parameterKey"),
     @NamedQuery(name = "ParametersForProcedureType.getRowEntriesTyped", query = "select distinct new org.mousephenotype.dcc.heatmap.entities.RowEntry(p.parameterKey, p.parameterName) from MeasurementsPerformed e, ParametersForProcedureType p where p.procedureType = :type and e.parameterId = p.parameterKey order by p.parameterName"),
     @NamedQuery(name = "ParametersForProcedureType.getRowEntriesUntyped", query = "select distinct new org.mousephenotype.dcc.heatmap.entities.RowEntry(p.procedureType, p.procedureName) from ParametersForProcedureType p order by p.procedureType"),
-    @NamedQuery(name = "ParametersForProcedureType.getColumnEntriesFilter", query = "select distinct g from ProceduresPerformed p, Genotype g where g.genotypeId <> 0 and p.genotypeId = g.genotypeId and g.geneSymbol is not null and g.geneSymbol <> 'null' and g.geneSymbol like :filter order by g.geneSymbol, g.genotypeId"),
+    @NamedQuery(name = "ParametersForProcedureType.getGenotypesWithProcedures", query = "select distinct g from ProceduresPerformed p, Genotype g where g.genotypeId <> 0 and p.genotypeId = g.genotypeId and g.geneSymbol is not null and g.geneSymbol <> 'null'"),
     @NamedQuery(name = "ParametersForProcedureType.getColumnEntriesMgiId", query = "select distinct g from ProceduresPerformed p, Genotype g where g.geneId = :mgiId and g.genotypeId <> 0 and p.genotypeId = g.genotypeId and g.geneSymbol is not null and g.geneSymbol <> 'null' order by g.geneSymbol, g.genotypeId"),
-    @NamedQuery(name = "ParametersForProcedureType.getSignificanceFilterUntyped", query = "select new org.mousephenotype.dcc.heatmap.entities.Significance(p.procedureType, a.genotypeId, min(a.pvalueDouble), min(case a.zygosity when 1 then a.pvalueDouble else 9999.0 end), min(case a.zygosity when 0 then a.pvalueDouble else 9999.0 end), min(case a.zygosity when 2 then a.pvalueDouble else 9999.0 end), min(a.pvalueSex), min(case a.zygosity when 1 then a.pvalueSex else 9999.0 end), min(case a.zygosity when 0 then a.pvalueSex else 9999.0 end), min(case a.zygosity when 2 then a.pvalueSex else 9999.0 end)) from Annotation a, ParametersForProcedureType p where a.parameterId = p.parameterKey and a.genotypeId in :genotypeIds group by a.genotypeId, p.procedureType order by a.genotypeId, p.procedureType"),
-    @NamedQuery(name = "ParametersForProcedureType.getSignificanceFilterTyped", query = "select new org.mousephenotype.dcc.heatmap.entities.Significance(p.parameterKey, a.genotypeId, min(a.pvalueDouble), min(case a.zygosity when 1 then a.pvalueDouble else 9999.0 end), min(case a.zygosity when 0 then a.pvalueDouble else 9999.0 end), min(case a.zygosity when 2 then a.pvalueDouble else 9999.0 end), min(a.pvalueSex), min(case a.zygosity when 1 then a.pvalueSex else 9999.0 end), min(case a.zygosity when 0 then a.pvalueSex else 9999.0 end), min(case a.zygosity when 2 then a.pvalueSex else 9999.0 end)) from Annotation a, ParametersForProcedureType p where p.procedureType = :type and a.parameterId = p.parameterKey and a.genotypeId in :genotypeIds group by a.genotypeId, p.parameterKey order by a.genotypeId, p.parameterName"),
-    @NamedQuery(name = "ParametersForProcedureType.getDetails", query = "select new org.mousephenotype.dcc.heatmap.entities.Details(p.parameterKey, p.parameterName, a.zygosity, min(a.pvalueDouble), min(case a.zygosity when 1 then a.pvalueDouble else 9999.0 end), min(case a.zygosity when 0 then a.pvalueDouble else 9999.0 end), min(case a.zygosity when 2 then a.pvalueDouble else 9999.0 end), min(a.pvalueSex), min(case a.zygosity when 1 then a.pvalueSex else 9999.0 end), min(case a.zygosity when 0 then a.pvalueSex else 9999.0 end), min(case a.zygosity when 2 then a.pvalueSex else 9999.0 end), a.yMP) from Annotation a, ParametersForProcedureType p where p.procedureType = :type and a.parameterId = p.parameterKey and a.genotypeId = :genotypeId group by p.parameterKey, a.zygosity order by p.parameterName, a.zygosity"),
-    @NamedQuery(name = "ParametersForProcedureType.getParameterDetails", query = "select new org.mousephenotype.dcc.heatmap.entities.Details(p.parameterKey, p.parameterName, a.zygosity, min(a.pvalueDouble), min(case a.zygosity when 1 then a.pvalueDouble else 9999.0 end), min(case a.zygosity when 0 then a.pvalueDouble else 9999.0 end), min(case a.zygosity when 2 then a.pvalueDouble else 9999.0 end), min(a.pvalueSex), min(case a.zygosity when 1 then a.pvalueSex else 9999.0 end), min(case a.zygosity when 0 then a.pvalueSex else 9999.0 end), min(case a.zygosity when 2 then a.pvalueSex else 9999.0 end), a.yMP) from Annotation a, ParametersForProcedureType p where a.parameterId = :parameterKey and a.parameterId = p.parameterKey and a.genotypeId = :genotypeId group by p.parameterKey, a.zygosity order by p.parameterName, a.zygosity")})
+    @NamedQuery(name = "ParametersForProcedureType.getDetails", query = "select new org.mousephenotype.dcc.heatmap.entities.Details(p.parameterKey, p.parameterName, a.zygosity, min(a.pvalueDouble), min(case a.zygosity when 1 then a.pvalueDouble else 9999.0 end), min(case a.zygosity when 0 then a.pvalueDouble else 9999.0 end), min(case a.zygosity when 2 then a.pvalueDouble else 9999.0 end), min(a.pvalueSex), min(case a.zygosity when 1 then a.pvalueSex else 9999.0 end), min(case a.zygosity when 0 then a.pvalueSex else 9999.0 end), min(case a.zygosity when 2 then a.pvalueSex else 9999.0 end), a.yMP) from Annotation a, ParametersForProcedureType p where p.procedureType = :type and a.parameterId = p.parameterKey and a.genotypeId = :genotypeId group by p.parameterKey, a.zygosity having min(a.pvalueDouble) < :threshold or min(a.pvalueSex) < :threshold order by p.parameterName, a.zygosity"),
+    @NamedQuery(name = "ParametersForProcedureType.getParameterDetails", query = "select new org.mousephenotype.dcc.heatmap.entities.Details(p.parameterKey, p.parameterName, a.zygosity, min(a.pvalueDouble), min(case a.zygosity when 1 then a.pvalueDouble else 9999.0 end), min(case a.zygosity when 0 then a.pvalueDouble else 9999.0 end), min(case a.zygosity when 2 then a.pvalueDouble else 9999.0 end), min(a.pvalueSex), min(case a.zygosity when 1 then a.pvalueSex else 9999.0 end), min(case a.zygosity when 0 then a.pvalueSex else 9999.0 end), min(case a.zygosity when 2 then a.pvalueSex else 9999.0 end), a.yMP) from Annotation a, ParametersForProcedureType p where a.parameterId = :parameterKey and a.parameterId = p.parameterKey and a.genotypeId = :genotypeId group by p.parameterKey, a.zygosity having min(a.pvalueDouble) < :threshold or min(a.pvalueSex) < :threshold order by p.parameterName, a.zygosity")})
 public class ParametersForProcedureType implements Serializable {
     
     @Id
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.entities;
+
+import java.io.Serializable;
+import javax.xml.bind.annotation.XmlElement;
+
+/**
+ * An MP term with the smallest p-value of the annotations of a genotype
+ * that roll up to it.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class RolledUpTerm implements Serializable {
+
+    private String key;
+    private String value;
+    private Double pvalue;
+
+    public RolledUpTerm() {
+    }
+
+    public RolledUpTerm(String key, String value, Double pvalue) {
+        this.key = key;
+        this.value = value;
+        this.pvalue = pvalue;
+    }
+
+    @XmlElement(name = "k")
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    @XmlElement(name = "v")
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    @XmlElement(name = "p")
+    public Double getPvalue() {
+        return pvalue;
+    }
+
+    public void setPvalue(Double pvalue) {
+        this.pvalue = pvalue;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.entities;
+
+import java.io.Serializable;
+
+/**
+ * A query that took longer than the slow query threshold, or failed.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class SlowQuery implements Serializable {
+
+    private long started;
+    private String name;
+    private String sql;
+    private String parameters;
+    private double elapsedMillis;
+    private String error;
+
+    public SlowQuery() {
+    }
+
+    public SlowQuery(long started, String name, String sql, String parameters,
+            double elapsedMillis, String error) {
+        this.started = started;
+        this.name = name;
+        this.sql = sql;
+        this.parameters = parameters;
+        this.elapsedMillis = elapsedMillis;
+        this.error = error;
+    }
+
+    /**
+     * Returns when the query started, in milliseconds since the epoch.
+     */
+    public long getStarted() {
+        return started;
+    }
+
+    public void setStarted(long started) {
+        this.started = started;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public void setSql(String sql) {
+        this.sql = sql;
+    }
+
+    public String getParameters() {
+        return parameters;
+    }
+
+    public void setParameters(String parameters) {
+        this.parameters = parameters;
+    }
+
+    public double getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(double elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.entities;
+
+import java.io.Serializable;
+import javax.xml.bind.annotation.XmlElement;
+
+/**
+ * A populated heatmap cell, identified by its row and column index in the
+ * heatmap headers. The p-values use the same names as SignificanceEntry.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class SparseCell implements Serializable {
+
+    private int row;
+    private int column;
+    private Double pValue;
+    private Double homPvalue;
+    private Double hetPvalue;
+    private Double hemPvalue;
+    private Double sexPvalue;
+    private Double homSexPvalue;
+    private Double hetSexPvalue;
+    private Double hemSexPvalue;
+
+    public SparseCell() {
+    }
+
+    public SparseCell(int row, int column, Double pValue,
+            Double homPvalue, Double hetPvalue, Double hemPvalue,
+            Double sexPvalue, Double homSexPvalue, Double hetSexPvalue,
+            Double hemSexPvalue) {
+        this.row = row;
+        this.column = column;
+        this.pValue = pValue;
+        this.homPvalue = homPvalue;
+        this.hetPvalue = hetPvalue;
+        this.hemPvalue = hemPvalue;
+        this.sexPvalue = sexPvalue;
+        this.homSexPvalue = homSexPvalue;
+        this.hetSexPvalue = hetSexPvalue;
+        this.hemSexPvalue = hemSexPvalue;
+    }
+
+    @XmlElement(name = "r")
+    public int getRow() {
+        return row;
+    }
+
+    public void setRow(int row) {
+        this.row = row;
+    }
+
+    @XmlElement(name = "c")
+    public int getColumn() {
+        return column;
+    }
+
+    public void setColumn(int column) {
+        this.column = column;
+    }
+
+    @XmlElement(name = "v")
+    public Double getpValue() {
+        return pValue;
+    }
+
+    public void setpValue(Double pValue) {
+        this.pValue = pValue;
+    }
+
+    @XmlElement(name = "o")
+    public Double getHomPvalue() {
+        return homPvalue;
+    }
+
+    public void setHomPvalue(Double homPvalue) {
+        this.homPvalue = homPvalue;
+    }
+
+    @XmlElement(name = "e")
+    public Double getHetPvalue() {
+        return hetPvalue;
+    }
+
+    public void setHetPvalue(Double hetPvalue) {
+        this.hetPvalue = hetPvalue;
+    }
+
+    @XmlElement(name = "m")
+    public Double getHemPvalue() {
+        return hemPvalue;
+    }
+
+    public void setHemPvalue(Double hemPvalue) {
+        this.hemPvalue = hemPvalue;
+    }
+
+    @XmlElement(name = "s")
+    public Double getSexPvalue() {
+        return sexPvalue;
+    }
+
+    public void setSexPvalue(Double sexPvalue) {
+        this.sexPvalue = sexPvalue;
+    }
+
+    @XmlElement(name = "os")
+    public Double getHomSexPvalue() {
+        return homSexPvalue;
+    }
+
+    public void setHomSexPvalue(Double homSexPvalue) {
+        this.homSexPvalue = homSexPvalue;
+    }
+
+    @XmlElement(name = "es")
+    public Double getHetSexPvalue() {
+        return hetSexPvalue;
+    }
+
+    public void setHetSexPvalue(Double hetSexPvalue) {
+        this.hetSexPvalue = hetSexPvalue;
+    }
+
+    @XmlElement(name = "ms")
+    public Double getHemSexPvalue() {
+        return hemSexPvalue;
+    }
+
+    public void setHemSexPvalue(Double hemSexPvalue) {
+        this.hemSexPvalue = hemSexPvalue;
+    }
+}
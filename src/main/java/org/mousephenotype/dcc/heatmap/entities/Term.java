@@ -45,7 +45,9 @@ import javax.xml.bind.annotation.XmlRootElement;
     @NamedQuery(name = "Term.findByNamespace", query = "SELECT t FROM Term t WHERE t.namespace = :namespace"),
     @NamedQuery(name = "Term.findByIsObsolete", query = "SELECT t FROM Term t WHERE t.isObsolete = :isObsolete"),
     @NamedQuery(name = "Term.findByIsRootTerm", query = "SELECT t FROM Term t WHERE t.isRootTerm = :isRootTerm"),
-    @NamedQuery(name = "Term.findByIsLeaf", query = "SELECT t FROM Term t WHERE t.isLeaf = :isLeaf")})
+    @NamedQuery(name = "Term.findByIsLeaf", query = "SELECT t FROM Term t WHERE t.isLeaf = :isLeaf"),
+    @NamedQuery(name = "Term.getNamesByPrefix", query = "select t.identifier, t.termName from Term t where t.identifier like :prefix"),
+    @NamedQuery(name = "Term.getVersion", query = "select count(t.termPk), max(t.termPk) from Term t")})
 public class Term implements Serializable {
     
     @Id
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.entities;
+
+import java.io.Serializable;
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * A relationship between two ontology terms, where the subject term is
+ * related to the object term by the predicate term (e.g., 'is_a').
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+@Entity
+@Table(name = "term_relationship", catalog = "ols", schema = "")
+@XmlRootElement
+@NamedQueries({
+    @NamedQuery(name = "TermRelationship.getVersion", query = "select count(r.termRelationshipPk), max(r.termRelationshipPk) from TermRelationship r"),
+    @NamedQuery(name = "TermRelationship.getParentsByPrefix", query = "select s.identifier, o.identifier from TermRelationship r, Term s, Term o, Term p where r.subjectTermPk = s.termPk and r.objectTermPk = o.termPk and r.predicateTermPk = p.termPk and p.termName = 'is_a' and s.identifier like :prefix and o.identifier like :prefix")})
+public class TermRelationship implements Serializable {
+
+    @Id
+    @Basic(optional = false)
+    @NotNull
+    @Column(name = "term_relationship_pk")
+    private Long termRelationshipPk;
+    @Basic(optional = false)
+    @NotNull
+    @Size(min = 1, max = 255)
+    @Column(name = "subject_term_pk")
+    private String subjectTermPk;
+    @Basic(optional = false)
+    @NotNull
+    @Size(min = 1, max = 255)
+    @Column(name = "predicate_term_pk")
+    private String predicateTermPk;
+    @Basic(optional = false)
+    @NotNull
+    @Size(min = 1, max = 255)
+    @Column(name = "object_term_pk")
+    private String objectTermPk;
+    @Basic(optional = false)
+    @NotNull
+    @Column(name = "ontology_id")
+    private int ontologyId;
+
+    public TermRelationship() {
+    }
+
+    public TermRelationship(Long termRelationshipPk, String subjectTermPk,
+            String predicateTermPk, String objectTermPk, int ontologyId) {
+        this.termRelationshipPk = termRelationshipPk;
+        this.subjectTermPk = subjectTermPk;
+        this.predicateTermPk = predicateTermPk;
+        this.objectTermPk = objectTermPk;
+        this.ontologyId = ontologyId;
+    }
+
+    public Long getTermRelationshipPk() {
+        return termRelationshipPk;
+    }
+
+    public void setTermRelationshipPk(Long termRelationshipPk) {
+        this.termRelationshipPk = termRelationshipPk;
+    }
+
+    public String getSubjectTermPk() {
+        return subjectTermPk;
+    }
+
+    public void setSubjectTermPk(String subjectTermPk) {
+        this.subjectTermPk = subjectTermPk;
+    }
+
+    public String getPredicateTermPk() {
+        return predicateTermPk;
+    }
+
+    public void setPredicateTermPk(String predicateTermPk) {
+        this.predicateTermPk = predicateTermPk;
+    }
+
+    public String getObjectTermPk() {
+        return objectTermPk;
+    }
+
+    public void setObjectTermPk(String objectTermPk) {
+        this.objectTermPk = objectTermPk;
+    }
+
+    public int getOntologyId() {
+        return ontologyId;
+    }
+
+    public void setOntologyId(int ontologyId) {
+        this.ontologyId = ontologyId;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram with fixed buckets, from a millisecond up to ten
+ * seconds. Recording is lock free, so a histogram can be shared by all of
+ * the request threads.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class Histogram {
+
+    /* upper bounds of the buckets, in seconds; the last bucket is +Inf */
+    private static final double[] BOUNDS = {
+        0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1.0, 2.5,
+        5.0, 10.0
+    };
+    private static final long[] BOUND_NANOS = new long[BOUNDS.length];
+
+    static {
+        for (int i = 0; i < BOUNDS.length; ++i) {
+            BOUND_NANOS[i] = (long) (BOUNDS[i] * 1.0e9);
+        }
+    }
+
+    private final AtomicLongArray buckets =
+            new AtomicLongArray(BOUNDS.length + 1);
+    private final AtomicLong sumNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        int i = 0;
+        while (i < BOUND_NANOS.length && nanos > BOUND_NANOS[i]) {
+            ++i;
+        }
+        buckets.incrementAndGet(i);
+        sumNanos.addAndGet(nanos);
+    }
+
+    public long getCount() {
+        long count = 0L;
+        for (int i = 0; i < buckets.length(); ++i) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Writes the cumulative buckets, sum and count of this histogram in the
+     * Prometheus text format, with the supplied label (formatted as
+     * 'name="value"').
+     */
+    void writeTo(Writer w, String name, String label) throws IOException {
+        long cumulative = 0L;
+        for (int i = 0; i <= BOUNDS.length; ++i) {
+            cumulative += buckets.get(i);
+            w.write(name + "_bucket{" + label + ",le=\""
+                    + (i < BOUNDS.length ? Double.toString(BOUNDS[i]) : "+Inf")
+                    + "\"} " + cumulative + "\n");
+        }
+        w.write(name + "_sum{" + label + "} " + sumNanos.get() / 1.0e9 + "\n");
+        w.write(name + "_count{" + label + "} " + cumulative + "\n");
+    }
+}
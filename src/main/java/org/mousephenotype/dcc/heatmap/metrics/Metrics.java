@@ -0,0 +1,173 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and latency histograms for the REST methods and the queries
+ * they run, exposed in the Prometheus text format (see MetricsREST).
+ *
+ * REST methods are identified as 'Resource.method', and queries by the
+ * name of the named query. Both sets of names are fixed by the code, so
+ * the number of series stays bounded.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class Metrics {
+
+    public static final String UNNAMED = "unnamed";
+    private final ConcurrentMap<String, Histogram> requests =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> requestErrors =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, QueryStats> queries =
+            new ConcurrentHashMap<>();
+    private final AtomicLong cellsEmitted = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    /**
+     * Records a completed request. A request that failed with a server
+     * error is also counted as an error.
+     */
+    public void recordRequest(String method, long nanos, int status) {
+        Histogram h = requests.get(method);
+        if (h == null) {
+            h = putIfAbsent(requests, method, new Histogram());
+        }
+        h.record(nanos);
+        if (status >= 500) {
+            AtomicLong e = requestErrors.get(method);
+            if (e == null) {
+                e = putIfAbsent(requestErrors, method, new AtomicLong());
+            }
+            e.incrementAndGet();
+        }
+    }
+
+    public void recordQuery(String query, long nanos, long rows) {
+        QueryStats s = getQueryStats(query);
+        s.latency.record(nanos);
+        s.rows.addAndGet(rows);
+    }
+
+    public void recordQueryError(String query) {
+        getQueryStats(query).errors.incrementAndGet();
+    }
+
+    public void addCellsEmitted(long cells) {
+        cellsEmitted.addAndGet(cells);
+    }
+
+    public void addBytesWritten(long bytes) {
+        bytesWritten.addAndGet(bytes);
+    }
+
+    /**
+     * Writes all of the metrics in the Prometheus text exposition format
+     * (version 0.0.4), with the series sorted by name.
+     */
+    public void writeTo(Writer w) throws IOException {
+        w.write("# HELP heatmap_request_seconds Latency of the REST methods,"
+                + " including serialisation.\n");
+        w.write("# TYPE heatmap_request_seconds histogram\n");
+        for (Map.Entry<String, Histogram> e : sorted(requests).entrySet()) {
+            e.getValue().writeTo(w, "heatmap_request_seconds",
+                    label("method", e.getKey()));
+        }
+
+        w.write("# HELP heatmap_request_errors_total REST requests that"
+                + " failed with a server error.\n");
+        w.write("# TYPE heatmap_request_errors_total counter\n");
+        for (Map.Entry<String, AtomicLong> e : sorted(requestErrors).entrySet()) {
+            writeSample(w, "heatmap_request_errors_total",
+                    label("method", e.getKey()), e.getValue().get());
+        }
+
+        Map<String, QueryStats> q = sorted(queries);
+        w.write("# HELP heatmap_query_seconds Execution time of the queries.\n");
+        w.write("# TYPE heatmap_query_seconds histogram\n");
+        for (Map.Entry<String, QueryStats> e : q.entrySet()) {
+            e.getValue().latency.writeTo(w, "heatmap_query_seconds",
+                    label("query", e.getKey()));
+        }
+        w.write("# HELP heatmap_query_rows_total Rows returned, or modified,"
+                + " by the queries.\n");
+        w.write("# TYPE heatmap_query_rows_total counter\n");
+        for (Map.Entry<String, QueryStats> e : q.entrySet()) {
+            writeSample(w, "heatmap_query_rows_total",
+                    label("query", e.getKey()), e.getValue().rows.get());
+        }
+        w.write("# HELP heatmap_query_errors_total Queries that failed.\n");
+        w.write("# TYPE heatmap_query_errors_total counter\n");
+        for (Map.Entry<String, QueryStats> e : q.entrySet()) {
+            writeSample(w, "heatmap_query_errors_total",
+                    label("query", e.getKey()), e.getValue().errors.get());
+        }
+
+        w.write("# HELP heatmap_cells_emitted_total Heatmap cells written"
+                + " to responses.\n");
+        w.write("# TYPE heatmap_cells_emitted_total counter\n");
+        writeSample(w, "heatmap_cells_emitted_total", null, cellsEmitted.get());
+        w.write("# HELP heatmap_response_bytes_total Bytes written to REST"
+                + " responses, after compression.\n");
+        w.write("# TYPE heatmap_response_bytes_total counter\n");
+        writeSample(w, "heatmap_response_bytes_total", null, bytesWritten.get());
+    }
+
+    private QueryStats getQueryStats(String query) {
+        String name = query == null || query.isEmpty() ? UNNAMED : query;
+        QueryStats s = queries.get(name);
+        if (s == null) {
+            s = putIfAbsent(queries, name, new QueryStats());
+        }
+        return s;
+    }
+
+    private static <V> V putIfAbsent(ConcurrentMap<String, V> m, String name,
+            V value) {
+        V existing = m.putIfAbsent(name, value);
+        return existing == null ? value : existing;
+    }
+
+    private static void writeSample(Writer w, String name, String label,
+            long value) throws IOException {
+        w.write(name + (label == null ? "" : "{" + label + "}")
+                + " " + value + "\n");
+    }
+
+    private static String label(String name, String value) {
+        return name + "=\"" + value.replace("\\", "\\\\")
+                .replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+
+    private static <V> Map<String, V> sorted(Map<String, V> m) {
+        return new TreeMap<>(m);
+    }
+
+    private static class QueryStats {
+
+        final Histogram latency = new Histogram();
+        final AtomicLong rows = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.persistence;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Application settings from heatmap.properties. A Java system property with
+ * the setting name prefixed by 'heatmap.' takes precedence.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public final class Configuration {
+
+    private static final String RESOURCE = "/heatmap.properties";
+    private static final String PREFIX = "heatmap.";
+    private static final Properties properties = load();
+
+    private Configuration() {
+    }
+
+    public static String get(String name, String defaultValue) {
+        String value = System.getProperty(PREFIX + name);
+        if (value == null) {
+            value = properties.getProperty(name);
+        }
+        return value == null || value.trim().isEmpty()
+                ? defaultValue : value.trim();
+    }
+
+    public static int getInt(String name, int defaultValue) {
+        try {
+            return Integer.parseInt(get(name, Integer.toString(defaultValue)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public static long getLong(String name, long defaultValue) {
+        try {
+            return Long.parseLong(get(name, Long.toString(defaultValue)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public static boolean getBoolean(String name, boolean defaultValue) {
+        return Boolean.parseBoolean(get(name, Boolean.toString(defaultValue)));
+    }
+
+    private static Properties load() {
+        Properties p = new Properties();
+        InputStream in = Configuration.class.getResourceAsStream(RESOURCE);
+        if (in != null) {
+            try {
+                p.load(in);
+            } catch (IOException e) {
+                System.err.println("Unable to read " + RESOURCE + ": "
+                        + e.getMessage());
+            } finally {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+        return p;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.persistence;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.apache.tomcat.jdbc.pool.PoolProperties;
+
+/**
+ * Bounded JDBC connection pool behind the persistence unit.
+ *
+ * Connections are validated before they are handed out (at most once per
+ * validation interval), and prepared statements are cached per connection.
+ * In addition to the active and idle counts kept by the pool, we record how
+ * long callers had to wait for a connection.
+ *
+ * The pool is configured with the 'db.' and 'pool.' settings in
+ * heatmap.properties.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class ConnectionPool extends DataSource {
+
+    private final AtomicLong borrowed = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public ConnectionPool(PoolProperties p) {
+        super(p);
+    }
+
+    public static ConnectionPool create() {
+        PoolProperties p = new PoolProperties();
+        p.setName("phenodcc-heatmap");
+        p.setDriverClassName(Configuration.get("db.driver", "com.mysql.jdbc.Driver"));
+        p.setUrl(Configuration.get("db.url", null));
+        p.setUsername(Configuration.get("db.user", null));
+        p.setPassword(Configuration.get("db.password", null));
+
+        p.setInitialSize(Configuration.getInt("pool.initial", 2));
+        p.setMinIdle(Configuration.getInt("pool.min.idle", 2));
+        p.setMaxIdle(Configuration.getInt("pool.max.idle", 10));
+        p.setMaxActive(Configuration.getInt("pool.max.active", 20));
+        p.setMaxWait(Configuration.getInt("pool.max.wait.ms", 10000));
+
+        p.setValidationQuery(Configuration.get("pool.validation.query", "SELECT 1"));
+        p.setValidationInterval(Configuration.getLong("pool.validation.interval.ms", 30000L));
+        p.setTestOnBorrow(true);
+        p.setTestWhileIdle(true);
+        p.setTimeBetweenEvictionRunsMillis(30000);
+        p.setMinEvictableIdleTimeMillis(60000);
+
+        p.setJdbcInterceptors("ConnectionState;StatementFinalizer;"
+                + "StatementCache(prepared=true,callable=false,max="
+                + Configuration.getInt("pool.statement.cache", 200) + ")");
+        p.setJmxEnabled(true);
+        return new ConnectionPool(p);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return super.getConnection();
+        } finally {
+            long wait = System.nanoTime() - start;
+            borrowed.incrementAndGet();
+            waitNanos.addAndGet(wait);
+            long max = maxWaitNanos.get();
+            while (wait > max && !maxWaitNanos.compareAndSet(max, wait)) {
+                max = maxWaitNanos.get();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of connections handed out since the pool was
+     * created.
+     */
+    public long getBorrowed() {
+        return borrowed.get();
+    }
+
+    /**
+     * Returns the total time callers waited for a connection in
+     * milliseconds.
+     */
+    public long getTotalWaitMillis() {
+        return waitNanos.get() / 1000000L;
+    }
+
+    /**
+     * Returns the longest time a caller waited for a connection in
+     * milliseconds.
+     */
+    public long getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1000000L;
+    }
+}
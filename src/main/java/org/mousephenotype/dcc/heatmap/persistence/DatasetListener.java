@@ -0,0 +1,33 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.persistence;
+
+/**
+ * Notified by the dataset monitor when the annotation/overview data changes.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public interface DatasetListener {
+
+    /**
+     * Called before the new dataset version is published, so that anything
+     * derived from the data can be rebuilt before it is served under the
+     * new version.
+     *
+     * @param version The dataset version that is about to be published.
+     */
+    void datasetChanged(long version);
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.persistence;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Tracks the version of the annotation/overview data.
+ *
+ * The data only changes when a new analysis run, or a new overview, is
+ * loaded. Hence, instead of evicting the entity cache on every request, we
+ * periodically compare a cheap signature of the data (row counts and
+ * highest identifiers). The entity cache is evicted, and the listeners are
+ * notified, only when the signature changes.
+ *
+ * The signature covers every table that a resident structure is built
+ * from, not just the annotations, so that the structures (and the ETags
+ * derived from the version) never outlive the data.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class DatasetMonitor {
+
+    private static final String[] VERSION_QUERIES = {
+        "Annotation.getVersion",
+        "MPTermForGenotypeID.getOverviewVersion",
+        "ParametersForProcedureType.getVersion",
+        /* genotype index */
+        "ParametersForProcedureType.getProceduresPerformedVersion",
+        /* dimension catalog */
+        "ParametersForProcedureType.getMeasurementsPerformedVersion",
+        "ParametersForProcedureType.getCentreVersion",
+        "ParametersForProcedureType.getStrainVersion",
+        /* term labels and ontology closure */
+        "MPTermForGenotypeID.getMpTermVersion",
+        "Term.getVersion",
+        "TermRelationship.getVersion"
+    };
+    private final PersistenceManager pm;
+    private final List<DatasetListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile String signature;
+    private volatile String tag;
+    private volatile long version = 0L;
+    private volatile long lastModified = System.currentTimeMillis();
+    private ScheduledExecutorService scheduler;
+
+    public DatasetMonitor(PersistenceManager pm) {
+        this.pm = pm;
+    }
+
+    public void addListener(DatasetListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Returns the current dataset version. This is incremented every time a
+     * change is detected, and is 0 until the data has been checked once.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the time (in milliseconds, truncated to seconds) when the
+     * current dataset version was published.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public String getSignature() {
+        return signature;
+    }
+
+    /**
+     * Returns an opaque tag that identifies the current dataset and the
+     * application version that serves it, or null until the data has been
+     * checked once. Unlike the version number, the tag stays the same across
+     * restarts as long as neither the data nor the application changes.
+     */
+    public String getTag() {
+        return tag;
+    }
+
+    public synchronized void start(long periodSeconds) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "heatmap-dataset-monitor");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    check();
+                } catch (Exception e) {
+                    System.err.println("Failed to check dataset version: "
+                            + e.getMessage());
+                }
+            }
+        }, 0, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Compares the current data signature with the last one, and publishes a
+     * new dataset version if they differ.
+     *
+     * @return True if a new version was published.
+     */
+    public synchronized boolean check() {
+        String s = probe();
+        if (s.equals(signature)) {
+            return false;
+        }
+        EntityManagerFactory emf = pm.getEntityManagerFactory();
+        emf.getCache().evictAll();
+
+        long next = version + 1;
+        for (DatasetListener l : listeners) {
+            try {
+                l.datasetChanged(next);
+            } catch (Exception e) {
+                System.err.println("Failed to refresh after dataset change: "
+                        + e.getMessage());
+            }
+        }
+        signature = s;
+        tag = Integer.toHexString((Configuration.get("application.version", "")
+                + "/" + s).hashCode());
+        lastModified = (System.currentTimeMillis() / 1000L) * 1000L;
+        version = next;
+        System.out.println("Dataset version " + next + " (" + s
+                + ") was published at " + new java.util.Date());
+        return true;
+    }
+
+    private String probe() {
+        EntityManager em = pm.getEntityManagerFactory().createEntityManager();
+        try {
+            StringBuilder s = new StringBuilder();
+            for (String q : VERSION_QUERIES) {
+                Object[] r = (Object[]) em.createNamedQuery(q).getSingleResult();
+                if (s.length() > 0) {
+                    s.append('-');
+                }
+                s.append(r[0]).append(':').append(r[1]);
+            }
+            return s.toString();
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -19,6 +19,13 @@ import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 import javax.servlet.annotation.WebListener;
+import org.mousephenotype.dcc.heatmap.engine.DimensionCatalog;
+import org.mousephenotype.dcc.heatmap.engine.GenotypeIndex;
+import org.mousephenotype.dcc.heatmap.engine.OntologyClosure;
+import org.mousephenotype.dcc.heatmap.engine.SignificanceEngine;
+import org.mousephenotype.dcc.heatmap.engine.SignificanceRefresher;
+import org.mousephenotype.dcc.heatmap.engine.TermLabels;
+import org.mousephenotype.dcc.heatmap.metrics.Metrics;
 
 /**
  *
@@ -30,16 +37,87 @@ public class PersistenceListener implements ServletContextListener {
     @Override
     public void contextInitialized(ServletContextEvent event) {
         ServletContext ctx = event.getServletContext();
+        Metrics metrics = (Metrics) ctx.getAttribute("Metrics");
+        if (metrics == null) {
+            metrics = new Metrics();
+            ctx.setAttribute("Metrics", metrics);
+        }
         PersistenceManager pm =
                 (PersistenceManager) ctx.getAttribute("PersistenceManager");
         if (pm == null) {
-            ctx.setAttribute("PersistenceManager", new PersistenceManager());
+            pm = new PersistenceManager();
+            pm.addSessionCustomizer(new QueryMetrics(metrics));
+            long threshold = Configuration.getLong("slowquery.threshold.ms", 500L);
+            if (threshold >= 0L) {
+                SlowQueryLog log = new SlowQueryLog(
+                        Configuration.getInt("slowquery.capacity", 100));
+                ctx.setAttribute("SlowQueryLog", log);
+                boolean values = Configuration.getBoolean(
+                        "slowquery.bind.values", false);
+                pm.addSessionCustomizer(
+                        new SlowQueryProfiler(log, threshold, values));
+            }
+            ctx.setAttribute("PersistenceManager", pm);
+        }
+        DatasetMonitor dm = (DatasetMonitor) ctx.getAttribute("DatasetMonitor");
+        if (dm == null) {
+            dm = new DatasetMonitor(pm);
+            ctx.setAttribute("DatasetMonitor", dm);
+
+            DimensionCatalog dc = new DimensionCatalog(pm);
+            ctx.setAttribute("DimensionCatalog", dc);
+            dm.addListener(dc);
+
+            GenotypeIndex gi = new GenotypeIndex(pm);
+            ctx.setAttribute("GenotypeIndex", gi);
+            dm.addListener(gi);
+
+            OntologyClosure oc = new OntologyClosure(pm);
+            ctx.setAttribute("OntologyClosure", oc);
+            dm.addListener(oc);
+
+            TermLabels tl = new TermLabels(pm);
+            ctx.setAttribute("TermLabels", tl);
+            dm.addListener(tl);
+
+            /* the table must be rebuilt before the engine loads it */
+            if (Configuration.getBoolean("significance.refresh", true)) {
+                dm.addListener(new SignificanceRefresher(pm));
+            }
+
+            SignificanceEngine se = new SignificanceEngine(pm);
+            ctx.setAttribute("SignificanceEngine", se);
+            dm.addListener(se);
+
+            dm.start(Configuration.getLong("dataset.poll.seconds", 60L));
+        }
+        if (ctx.getAttribute("QueryExecutor") == null) {
+            ctx.setAttribute("QueryExecutor", new QueryExecutor(
+                    Configuration.getInt("query.threads", 8),
+                    Configuration.getInt("query.queue", 64)));
         }
     }
 
     @Override
     public void contextDestroyed(ServletContextEvent event) {
         ServletContext ctx = event.getServletContext();
+        DatasetMonitor dm = (DatasetMonitor) ctx.getAttribute("DatasetMonitor");
+        if (dm != null) {
+            dm.stop();
+            ctx.removeAttribute("DatasetMonitor");
+        }
+        QueryExecutor qe = (QueryExecutor) ctx.getAttribute("QueryExecutor");
+        if (qe != null) {
+            qe.shutdown();
+            ctx.removeAttribute("QueryExecutor");
+        }
+        ctx.removeAttribute("DimensionCatalog");
+        ctx.removeAttribute("GenotypeIndex");
+        ctx.removeAttribute("OntologyClosure");
+        ctx.removeAttribute("TermLabels");
+        ctx.removeAttribute("SignificanceEngine");
+        ctx.removeAttribute("Metrics");
+        ctx.removeAttribute("SlowQueryLog");
         PersistenceManager pm =
                 (PersistenceManager) ctx.getAttribute("PersistenceManager");
         pm.closeEntityManagerFactory();
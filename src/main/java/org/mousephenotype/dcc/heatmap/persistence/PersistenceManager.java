@@ -15,8 +15,15 @@
  */
 package org.mousephenotype.dcc.heatmap.persistence;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
+import org.eclipse.persistence.config.SessionCustomizer;
+import org.eclipse.persistence.jpa.JpaHelper;
+import org.eclipse.persistence.sessions.Session;
 
 /**
  *
@@ -24,30 +31,75 @@ import javax.persistence.Persistence;
  */
 public class PersistenceManager {
 
-    protected EntityManagerFactory emf;
+    protected volatile EntityManagerFactory emf;
+    protected volatile ConnectionPool pool;
     private final String persistenceUnit = "org.mousephenotype.dcc.heatmap.entities.pu";
+    private final List<SessionCustomizer> customizers = new ArrayList<>();
 
     public PersistenceManager() {
     }
 
+    /* the dataset monitor thread and request threads may get here first */
     public EntityManagerFactory getEntityManagerFactory() {
-        if (emf == null) {
-            createEntityManagerFactory();
+        EntityManagerFactory f = emf;
+        if (f == null) {
+            synchronized (this) {
+                if (emf == null) {
+                    createEntityManagerFactory();
+                }
+                f = emf;
+            }
         }
-        return emf;
+        return f;
     }
 
-    public void closeEntityManagerFactory() {
+    public ConnectionPool getConnectionPool() {
+        return pool;
+    }
+
+    /**
+     * Adds a customizer that is applied to the EclipseLink session when the
+     * entity manager factory is created, e.g., to attach listeners.
+     */
+    public void addSessionCustomizer(SessionCustomizer customizer) {
+        customizers.add(customizer);
+    }
+
+    public synchronized void closeEntityManagerFactory() {
         if (emf != null) {
             emf.close();
             emf = null;
             System.out.println("Persistence unit '" + persistenceUnit
                     + "' was closed at " + new java.util.Date());
         }
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
     }
 
-    protected void createEntityManagerFactory() {
-        emf = Persistence.createEntityManagerFactory(persistenceUnit);
+    /* the pool and the factory are created together under the same lock */
+    protected synchronized void createEntityManagerFactory() {
+        if (pool == null) {
+            pool = ConnectionPool.create();
+        }
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.nonJtaDataSource", pool);
+        EntityManagerFactory f = Persistence.createEntityManagerFactory(
+                persistenceUnit, properties);
+        if (!customizers.isEmpty()) {
+            Session session = JpaHelper.getServerSession(f);
+            for (SessionCustomizer c : customizers) {
+                try {
+                    c.customize(session);
+                } catch (Exception e) {
+                    System.err.println("Failed to customize persistence unit '"
+                            + persistenceUnit + "': " + e.getMessage());
+                }
+            }
+        }
+        /* published only once customized, for the unsynchronized readers */
+        emf = f;
         System.out.println("Persistence unit '" + persistenceUnit
                 + "' was created at " + new java.util.Date());
     }
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.persistence;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of threads for running the independent queries of a request
+ * concurrently.
+ *
+ * The number of threads and the length of the queue are fixed. When both
+ * are exhausted, the task runs on the calling thread instead; hence, under
+ * heavy load a request degrades to running its queries one after another,
+ * rather than piling up more work.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class QueryExecutor {
+
+    private final ThreadPoolExecutor executor;
+
+    public QueryExecutor(int threads, int queueLength) {
+        final AtomicInteger count = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueLength),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "heatmap-query-"
+                                + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public <V> Future<V> submit(Callable<V> task) {
+        return executor.submit(task);
+    }
+
+    /**
+     * Returns a future that already holds the supplied result, for when the
+     * result was available without running a task.
+     */
+    public static <V> Future<V> completed(V result) {
+        FutureTask<V> future = new FutureTask<>(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, result);
+        future.run();
+        return future;
+    }
+
+    /**
+     * Waits for the task to complete and returns its result. Runtime
+     * exceptions thrown by the task are rethrown as they are.
+     */
+    public static <V> V await(Future<V> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for query", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
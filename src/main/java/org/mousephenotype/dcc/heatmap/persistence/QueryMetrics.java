@@ -0,0 +1,127 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.persistence;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import org.eclipse.persistence.config.SessionCustomizer;
+import org.eclipse.persistence.exceptions.DatabaseException;
+import org.eclipse.persistence.exceptions.ExceptionHandler;
+import org.eclipse.persistence.exceptions.QueryException;
+import org.eclipse.persistence.queries.DatabaseQuery;
+import org.eclipse.persistence.sessions.Session;
+import org.eclipse.persistence.sessions.SessionEvent;
+import org.eclipse.persistence.sessions.SessionEventAdapter;
+import org.mousephenotype.dcc.heatmap.metrics.Metrics;
+
+/**
+ * Records the execution time, row count and failures of every query run by
+ * the persistence unit, by the name of the named query.
+ *
+ * EclipseLink raises the pre and post execution events on the thread that
+ * runs the query, and queries may nest (e.g., when relationships are
+ * loaded), so the start times are kept per thread, by query. A failed
+ * query never raises the post event; instead, the exception handler
+ * records the error, drops the start time of the failed query, and
+ * rethrows the exception. Exceptions raised before a query has started
+ * (e.g., validation errors or a lost connection) have no start time, and
+ * so leave the start times of the enclosing queries alone. The map is
+ * removed from the thread once empty, so that nothing is left behind on
+ * the pooled request threads.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class QueryMetrics extends SessionEventAdapter
+        implements SessionCustomizer, ExceptionHandler {
+
+    private final Metrics metrics;
+    private final ThreadLocal<Map<DatabaseQuery, Long>> started =
+            new ThreadLocal<Map<DatabaseQuery, Long>>() {
+                @Override
+                protected Map<DatabaseQuery, Long> initialValue() {
+                    return new IdentityHashMap<>();
+                }
+            };
+
+    public QueryMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void customize(Session session) {
+        session.getEventManager().addListener(this);
+        session.setExceptionHandler(this);
+    }
+
+    @Override
+    public void preExecuteQuery(SessionEvent event) {
+        if (event.getQuery() != null) {
+            started.get().put(event.getQuery(), System.nanoTime());
+        }
+    }
+
+    @Override
+    public void postExecuteQuery(SessionEvent event) {
+        Long start = removeStart(event.getQuery());
+        if (start != null) {
+            metrics.recordQuery(getName(event.getQuery()),
+                    System.nanoTime() - start, countRows(event.getResult()));
+        }
+    }
+
+    @Override
+    public Object handleException(RuntimeException exception) {
+        DatabaseQuery query = null;
+        if (exception instanceof DatabaseException) {
+            query = ((DatabaseException) exception).getQuery();
+        } else if (exception instanceof QueryException) {
+            query = ((QueryException) exception).getQuery();
+        }
+        removeStart(query);
+        metrics.recordQueryError(getName(query));
+        throw exception;
+    }
+
+    /* returns null if the query was never started on this thread */
+    private Long removeStart(DatabaseQuery query) {
+        if (query == null) {
+            return null;
+        }
+        Map<DatabaseQuery, Long> m = started.get();
+        Long start = m.remove(query);
+        if (m.isEmpty()) {
+            started.remove();
+        }
+        return start;
+    }
+
+    private static String getName(DatabaseQuery query) {
+        return query == null ? null : query.getName();
+    }
+
+    /* collections for reads, the update count for modifications */
+    private static long countRows(Object result) {
+        if (result == null) {
+            return 0L;
+        } else if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        } else if (result instanceof Number) {
+            return ((Number) result).longValue();
+        }
+        return 1L;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.mousephenotype.dcc.heatmap.entities.SlowQuery;
+
+/**
+ * The most recent slow queries, kept in a ring buffer of fixed capacity so
+ * that a burst of slow queries can never grow the log without bound.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class SlowQueryLog {
+
+    private final SlowQuery[] entries;
+    private int next = 0;
+    private long recorded = 0L;
+
+    public SlowQueryLog(int capacity) {
+        entries = new SlowQuery[Math.max(1, capacity)];
+    }
+
+    public synchronized void add(SlowQuery q) {
+        entries[next] = q;
+        next = (next + 1) % entries.length;
+        ++recorded;
+    }
+
+    /**
+     * Returns the number of slow queries recorded since the log was
+     * created, including those that were overwritten.
+     */
+    public synchronized long getRecorded() {
+        return recorded;
+    }
+
+    /**
+     * Returns the entries currently in the log, the most recent first.
+     */
+    public synchronized List<SlowQuery> getEntries() {
+        List<SlowQuery> l = new ArrayList<>(entries.length);
+        for (int i = 1; i <= entries.length; ++i) {
+            SlowQuery q = entries[(next - i + entries.length) % entries.length];
+            if (q == null) {
+                break;
+            }
+            l.add(q);
+        }
+        return l;
+    }
+}
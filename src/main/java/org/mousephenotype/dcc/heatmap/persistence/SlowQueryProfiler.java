@@ -0,0 +1,126 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.persistence;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import org.eclipse.persistence.config.SessionCustomizer;
+import org.eclipse.persistence.internal.sessions.AbstractSession;
+import org.eclipse.persistence.queries.DatabaseQuery;
+import org.eclipse.persistence.sessions.Record;
+import org.eclipse.persistence.sessions.Session;
+import org.eclipse.persistence.sessions.SessionProfilerAdapter;
+import org.mousephenotype.dcc.heatmap.entities.SlowQuery;
+
+/**
+ * EclipseLink session profiler that records the queries which take longer
+ * than a threshold, or fail, in a slow query log.
+ *
+ * For each such query we keep the name of the named query, its SQL and the
+ * names of its parameters. The bind values (gene symbols, MGI identifiers,
+ * filter strings) are only kept if requested, and are otherwise shown as
+ * '?'. Collections bound to an IN list (e.g., genotypeIds) are summarised
+ * by their size and, with the bind values, their first few values, since
+ * these lists can hold thousands of identifiers.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class SlowQueryProfiler extends SessionProfilerAdapter
+        implements SessionCustomizer {
+
+    private static final int MAX_SQL_LENGTH = 4000;
+    private static final int MAX_LISTED_VALUES = 10;
+    private final SlowQueryLog log;
+    private final long thresholdNanos;
+    private final boolean withValues;
+
+    public SlowQueryProfiler(SlowQueryLog log, long thresholdMillis,
+            boolean withValues) {
+        this.log = log;
+        this.thresholdNanos = thresholdMillis * 1000000L;
+        this.withValues = withValues;
+    }
+
+    @Override
+    public void customize(Session session) {
+        session.setProfiler(this);
+    }
+
+    @Override
+    public Object profileExecutionOfQuery(DatabaseQuery query, Record row,
+            AbstractSession session) {
+        long started = System.currentTimeMillis();
+        long start = System.nanoTime();
+        try {
+            Object result = super.profileExecutionOfQuery(query, row, session);
+            long elapsed = System.nanoTime() - start;
+            if (elapsed >= thresholdNanos) {
+                record(query, row, started, elapsed, null);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            record(query, row, started, System.nanoTime() - start,
+                    e.getClass().getSimpleName() + ": " + e.getMessage());
+            throw e;
+        }
+    }
+
+    private void record(DatabaseQuery query, Record row, long started,
+            long elapsed, String error) {
+        String sql = query.getSQLString();
+        if (sql != null && sql.length() > MAX_SQL_LENGTH) {
+            sql = sql.substring(0, MAX_SQL_LENGTH) + "...";
+        }
+        log.add(new SlowQuery(started, query.getName(), sql,
+                getParameters(query, row), elapsed / 1.0e6, error));
+    }
+
+    private String getParameters(DatabaseQuery query, Record row) {
+        List<String> names = query.getArguments();
+        if (row == null || names == null || names.isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String name : names) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(name).append('=');
+            Object v = row.get(name);
+            if (v instanceof Collection) {
+                appendCollection(sb, (Collection<?>) v);
+            } else {
+                sb.append(withValues ? v : "?");
+            }
+        }
+        return sb.toString();
+    }
+
+    private void appendCollection(StringBuilder sb, Collection<?> c) {
+        sb.append('(').append(c.size()).append(" values");
+        if (withValues) {
+            Iterator<?> i = c.iterator();
+            for (int n = 0; n < MAX_LISTED_VALUES && i.hasNext(); ++n) {
+                sb.append(n == 0 ? ": " : " ").append(i.next());
+            }
+            if (i.hasNext()) {
+                sb.append(" ...");
+            }
+        }
+        sb.append(')');
+    }
+}
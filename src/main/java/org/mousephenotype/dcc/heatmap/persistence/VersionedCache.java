@@ -0,0 +1,71 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.persistence;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A bounded cache where every value is tagged with the dataset version it
+ * was computed from. A value is only returned for the same version, so the
+ * cache is invalidated implicitly when the dataset version changes.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class VersionedCache<K, V> {
+
+    private final ConcurrentHashMap<K, Entry<V>> entries =
+            new ConcurrentHashMap<>();
+    private final int capacity;
+
+    public VersionedCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public V get(K key, long version) {
+        Entry<V> e = entries.get(key);
+        return e == null || e.version != version ? null : e.value;
+    }
+
+    public void put(K key, V value, long version) {
+        if (entries.size() >= capacity && !entries.containsKey(key)) {
+            evictStale(version);
+            if (entries.size() >= capacity) {
+                return;
+            }
+        }
+        entries.put(key, new Entry<>(value, version));
+    }
+
+    private void evictStale(long version) {
+        for (K key : entries.keySet()) {
+            Entry<V> e = entries.get(key);
+            if (e != null && e.version != version) {
+                entries.remove(key, e);
+            }
+        }
+    }
+
+    private static class Entry<V> {
+
+        final V value;
+        final long version;
+
+        Entry(V value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+    }
+}
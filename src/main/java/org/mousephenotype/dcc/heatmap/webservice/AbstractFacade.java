@@ -23,7 +23,23 @@ import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
 import javax.servlet.ServletContext;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.StreamingOutput;
+import org.mousephenotype.dcc.heatmap.engine.DimensionCatalog;
+import org.mousephenotype.dcc.heatmap.engine.GenotypeIndex;
+import org.mousephenotype.dcc.heatmap.engine.OntologyClosure;
+import org.mousephenotype.dcc.heatmap.engine.SignificanceEngine;
+import org.mousephenotype.dcc.heatmap.engine.SignificanceTable;
+import org.mousephenotype.dcc.heatmap.engine.TermLabels;
+import org.mousephenotype.dcc.heatmap.entities.ColumnEntry;
+import org.mousephenotype.dcc.heatmap.entities.Details;
+import org.mousephenotype.dcc.heatmap.entities.HeatmapTile;
+import org.mousephenotype.dcc.heatmap.entities.ParametersForProcedureType;
+import org.mousephenotype.dcc.heatmap.entities.RowEntry;
+import org.mousephenotype.dcc.heatmap.entities.SparseCell;
+import org.mousephenotype.dcc.heatmap.metrics.Metrics;
+import org.mousephenotype.dcc.heatmap.persistence.DatasetMonitor;
 import org.mousephenotype.dcc.heatmap.persistence.PersistenceManager;
+import org.mousephenotype.dcc.heatmap.persistence.QueryExecutor;
 
 /**
  *
@@ -43,10 +59,138 @@ public abstract class AbstractFacade<T> {
         PersistenceManager pm =
                 (PersistenceManager) context.getAttribute("PersistenceManager");
         EntityManagerFactory emf = pm.getEntityManagerFactory();
-        emf.getCache().evictAll();
         return emf.createEntityManager();
     }
 
+    protected DatasetMonitor getDatasetMonitor() {
+        return (DatasetMonitor) context.getAttribute("DatasetMonitor");
+    }
+
+    protected DimensionCatalog getDimensionCatalog() {
+        return (DimensionCatalog) context.getAttribute("DimensionCatalog");
+    }
+
+    protected GenotypeIndex getGenotypeIndex() {
+        return (GenotypeIndex) context.getAttribute("GenotypeIndex");
+    }
+
+    protected OntologyClosure getOntologyClosure() {
+        return (OntologyClosure) context.getAttribute("OntologyClosure");
+    }
+
+    protected SignificanceEngine getSignificanceEngine() {
+        return (SignificanceEngine) context.getAttribute("SignificanceEngine");
+    }
+
+    protected TermLabels getTermLabels() {
+        return (TermLabels) context.getAttribute("TermLabels");
+    }
+
+    protected QueryExecutor getQueryExecutor() {
+        return (QueryExecutor) context.getAttribute("QueryExecutor");
+    }
+
+    protected Metrics getMetrics() {
+        return (Metrics) context.getAttribute("Metrics");
+    }
+
+    /**
+     * Returns the supplied p-value threshold, clamped to [0, 1], or the
+     * default if no threshold was supplied.
+     */
+    protected double getThreshold(Double threshold, double defaultValue) {
+        if (threshold == null) {
+            return defaultValue;
+        }
+        return Math.max(0.0, Math.min(1.0, threshold));
+    }
+
+    /**
+     * Returns the window of the heatmap with the supplied headers that is
+     * covered by the row and column ranges. Only the headers and cells that
+     * fall inside the window are sent.
+     */
+    protected HeatmapTilePack getTile(long version,
+            List<RowEntry> r, List<ColumnEntry> c,
+            SignificanceTable table, double threshold,
+            TileRange rows, TileRange columns) {
+        HeatmapTilePack p = new HeatmapTilePack();
+        List<RowEntry> tr = r.subList(rows.getFrom(), rows.getTo());
+        List<ColumnEntry> tc = c.subList(columns.getFrom(), columns.getTo());
+        List<SparseCell> v = table.toCells(tr, tc, threshold);
+        p.setData(new HeatmapTile("A heatmap", tr, tc, v, version,
+                rows.getFrom(), columns.getFrom(), r.size(), c.size()));
+        getMetrics().addCellsEmitted(v.size());
+        return p;
+    }
+
+    /**
+     * Returns the streaming export of the supplied table for every genotype
+     * that has procedures, in the supplied media type.
+     */
+    protected StreamingOutput getExport(String mediaType,
+            List<RowEntry> r, SignificanceTable table, Double threshold) {
+        return new SignificanceExport(mediaType, r, table,
+                getGenotypeIndex().getAll(),
+                getThreshold(threshold, SignificanceTable.NO_THRESHOLD),
+                getMetrics());
+    }
+
+    /**
+     * Sets the MP term and selection outcome of the supplied details from
+     * the resident term labels.
+     */
+    protected void setMpTerms(List<Details> details) {
+        TermLabels labels = getTermLabels();
+        for (Details d : details) {
+            if (d.getMpId() == null) {
+                continue;
+            }
+            String label = labels.getDetailsLabel(d.getMpId());
+            if (label != null) {
+                d.setMpTerm(label);
+                d.setSelectionOutcome(getSelectionOutcome(
+                        labels.getSelectionOutcome(d.getMpId())));
+            }
+        }
+    }
+
+    /**
+     * Sets the procedure name of the supplied details using the resident
+     * parameter/procedure associations.
+     */
+    protected void setProcedureNames(List<Details> details) {
+        DimensionCatalog catalog = getDimensionCatalog();
+        for (Details d : details) {
+            ParametersForProcedureType p = catalog.getParameter(d.getParameterKey());
+            if (p != null) {
+                d.setProcedureName(p.getProcedureName());
+            }
+        }
+    }
+
+    protected int getSelectionOutcome(String o) {
+        int outcome = -1;
+        if (o == null) {
+            return outcome;
+        }
+        switch (o) {
+            case "INCREASED":
+                outcome = 1;
+                break;
+            case "DECREASED":
+                outcome = 2;
+                break;
+            case "ABNORMAL":
+                outcome = 3;
+                break;
+            case "INFERRED":
+                outcome = 4;
+                break;
+        }
+        return outcome;
+    }
+
     public void create(T entity) {
         EntityManager em = getEntityManager();
         em.getTransaction().begin();
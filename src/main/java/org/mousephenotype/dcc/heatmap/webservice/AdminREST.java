@@ -0,0 +1,77 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.webservice;
+
+import javax.servlet.ServletContext;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import org.mousephenotype.dcc.heatmap.entities.PoolStatus;
+import org.mousephenotype.dcc.heatmap.persistence.ConnectionPool;
+import org.mousephenotype.dcc.heatmap.persistence.PersistenceManager;
+import org.mousephenotype.dcc.heatmap.persistence.SlowQueryLog;
+
+/**
+ * Operational status of the web application.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+@Path("admin")
+public class AdminREST {
+
+    @Context
+    private ServletContext context;
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("pool")
+    public PoolStatusPack getPoolStatus() {
+        PoolStatusPack p = new PoolStatusPack();
+        PersistenceManager pm =
+                (PersistenceManager) context.getAttribute("PersistenceManager");
+        ConnectionPool pool = pm.getConnectionPool();
+        if (pool != null) {
+            PoolStatus s = new PoolStatus();
+            s.setSize(pool.getSize());
+            s.setActive(pool.getActive());
+            s.setIdle(pool.getIdle());
+            s.setWaiting(pool.getWaitCount());
+            s.setBorrowed(pool.getBorrowed());
+            s.setTotalWaitMillis(pool.getTotalWaitMillis());
+            s.setMaxWaitMillis(pool.getMaxWaitMillis());
+            p.setData(s);
+        }
+        return p;
+    }
+
+    /**
+     * Returns the most recent slow or failed queries, the latest first.
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("queries")
+    public SlowQueryPack getSlowQueries() {
+        SlowQueryPack p = new SlowQueryPack();
+        SlowQueryLog log = (SlowQueryLog) context.getAttribute("SlowQueryLog");
+        if (log != null) {
+            p.setTotal(log.getRecorded());
+            p.setData(log.getEntries());
+        }
+        return p;
+    }
+}
@@ -0,0 +1,363 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.webservice;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import org.mousephenotype.dcc.heatmap.entities.PackedHeatmap;
+import org.mousephenotype.dcc.heatmap.persistence.Configuration;
+
+/**
+ * Compresses REST responses with gzip for clients that accept it.
+ *
+ * The response is held back until it reaches compression.min.bytes, so
+ * that small responses, where the gzip overhead is not worth it, go out
+ * unchanged with a Content-Length. Only JSON, text and packed heatmap
+ * content is compressed. The hold-back buffers and the deflaters are
+ * pooled, since allocating a deflater for every response is expensive.
+ *
+ * A compressed response is a different representation, so its ETag gets
+ * the suffix '-gzip' (see ConditionalGetFilter).
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class CompressionFilter implements Filter {
+
+    static final String ETAG_SUFFIX = "-gzip";
+    private static final byte[] GZIP_HEADER = {
+        0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+    };
+    private int minBytes;
+    private int bufferBytes;
+    private int level;
+    private ArrayBlockingQueue<byte[]> buffers;
+    private ArrayBlockingQueue<Deflater> deflaters;
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        minBytes = Configuration.getInt("compression.min.bytes", 1024);
+        bufferBytes = Math.max(minBytes,
+                Configuration.getInt("compression.buffer.bytes", 8192));
+        level = Configuration.getInt("compression.level", 6);
+        int pooled = Configuration.getInt("compression.pool.size", 32);
+        buffers = new ArrayBlockingQueue<>(2 * pooled);
+        deflaters = new ArrayBlockingQueue<>(pooled);
+    }
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res,
+            FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) req;
+        String encoding = request.getHeader("Accept-Encoding");
+        if (encoding == null || !encoding.contains("gzip")
+                || "HEAD".equals(request.getMethod())) {
+            chain.doFilter(req, res);
+            return;
+        }
+        CompressingResponse response =
+                new CompressingResponse((HttpServletResponse) res);
+        try {
+            chain.doFilter(req, response);
+            response.finish();
+        } finally {
+            response.release();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        Deflater d;
+        while ((d = deflaters.poll()) != null) {
+            d.end();
+        }
+        buffers.clear();
+    }
+
+    private static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        return contentType.startsWith("application/json")
+                || contentType.startsWith("text/")
+                || contentType.startsWith("application/javascript")
+                || contentType.startsWith(PackedHeatmap.MEDIA_TYPE);
+    }
+
+    private byte[] acquireBuffer() {
+        byte[] b = buffers.poll();
+        return b == null ? new byte[bufferBytes] : b;
+    }
+
+    private void releaseBuffer(byte[] b) {
+        if (b != null) {
+            buffers.offer(b);
+        }
+    }
+
+    private Deflater acquireDeflater() {
+        Deflater d = deflaters.poll();
+        if (d == null) {
+            d = new Deflater(level, true);
+        }
+        return d;
+    }
+
+    private void releaseDeflater(Deflater d) {
+        d.reset();
+        if (!deflaters.offer(d)) {
+            d.end();
+        }
+    }
+
+    private class CompressingResponse extends HttpServletResponseWrapper {
+
+        private final HttpServletResponse response;
+        private CompressingStream stream;
+        private PrintWriter writer;
+
+        CompressingResponse(HttpServletResponse response) {
+            super(response);
+            this.response = response;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (writer != null) {
+                throw new IllegalStateException("getWriter() was already called");
+            }
+            if (stream == null) {
+                stream = new CompressingStream(response);
+            }
+            return stream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                if (stream != null) {
+                    throw new IllegalStateException("getOutputStream() was already called");
+                }
+                stream = new CompressingStream(response);
+                writer = new PrintWriter(new OutputStreamWriter(stream,
+                        response.getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        /* the length is not known until we decide whether to compress */
+        @Override
+        public void setContentLength(int length) {
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            } else if (stream != null) {
+                stream.flush();
+            }
+        }
+
+        void finish() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (stream != null) {
+                stream.finish();
+            }
+        }
+
+        void release() {
+            if (stream != null) {
+                stream.release();
+            }
+        }
+    }
+
+    private class CompressingStream extends ServletOutputStream {
+
+        private final HttpServletResponse response;
+        private final OutputStream out;
+        private final CRC32 crc = new CRC32();
+        private byte[] buffer = acquireBuffer();
+        private byte[] deflated;
+        private Deflater deflater;
+        private int count = 0;
+        private long inputBytes = 0;
+        private boolean buffering = true;
+        private boolean finished = false;
+
+        CompressingStream(HttpServletResponse response) throws IOException {
+            this.response = response;
+            this.out = response.getOutputStream();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (finished) {
+                throw new IOException("Stream was already finished");
+            }
+            if (buffering) {
+                if (count + len < minBytes) {
+                    System.arraycopy(b, off, buffer, count, len);
+                    count += len;
+                    return;
+                }
+                start();
+            }
+            if (deflater == null) {
+                out.write(b, off, len);
+            } else {
+                deflate(b, off, len);
+            }
+        }
+
+        /* while buffering, we hold on to the data until we can decide */
+        @Override
+        public void flush() throws IOException {
+            if (!buffering) {
+                if (deflater != null) {
+                    deflateFlush();
+                }
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            throw new UnsupportedOperationException();
+        }
+
+        void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (buffering) {
+                buffering = false;
+                if (count > 0) {
+                    response.setContentLength(count);
+                    out.write(buffer, 0, count);
+                }
+            } else if (deflater != null) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(deflated, 0, deflated.length);
+                    out.write(deflated, 0, n);
+                }
+                writeTrailer();
+            }
+            out.flush();
+        }
+
+        void release() {
+            releaseBuffer(buffer);
+            releaseBuffer(deflated);
+            buffer = deflated = null;
+            if (deflater != null) {
+                releaseDeflater(deflater);
+                deflater = null;
+            }
+        }
+
+        /* decides on compression once there is enough data */
+        private void start() throws IOException {
+            buffering = false;
+            if (isCompressible(response.getContentType())
+                    && !response.containsHeader("Content-Encoding")) {
+                response.setHeader("Content-Encoding", "gzip");
+                response.addHeader("Vary", "Accept-Encoding");
+                String etag = response.getHeader("ETag");
+                if (etag != null && etag.endsWith("\"")) {
+                    response.setHeader("ETag", etag.substring(0,
+                            etag.length() - 1) + ETAG_SUFFIX + "\"");
+                }
+                deflater = acquireDeflater();
+                deflated = acquireBuffer();
+                out.write(GZIP_HEADER);
+                if (count > 0) {
+                    deflate(buffer, 0, count);
+                }
+            } else if (count > 0) {
+                out.write(buffer, 0, count);
+            }
+            count = 0;
+        }
+
+        private void deflate(byte[] b, int off, int len) throws IOException {
+            crc.update(b, off, len);
+            inputBytes += len;
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                int n = deflater.deflate(deflated, 0, deflated.length);
+                out.write(deflated, 0, n);
+            }
+        }
+
+        private void deflateFlush() throws IOException {
+            int n;
+            do {
+                n = deflater.deflate(deflated, 0, deflated.length,
+                        Deflater.SYNC_FLUSH);
+                out.write(deflated, 0, n);
+            } while (n == deflated.length);
+        }
+
+        private void writeTrailer() throws IOException {
+            writeInt((int) crc.getValue());
+            writeInt((int) inputBytes);
+        }
+
+        /* little-endian, as required by the gzip format */
+        private void writeInt(int v) throws IOException {
+            out.write(v & 0xff);
+            out.write((v >> 8) & 0xff);
+            out.write((v >> 16) & 0xff);
+            out.write((v >> 24) & 0xff);
+        }
+    }
+}
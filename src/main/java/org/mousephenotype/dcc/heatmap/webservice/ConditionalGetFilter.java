@@ -0,0 +1,144 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.webservice;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.mousephenotype.dcc.heatmap.persistence.DatasetMonitor;
+
+/**
+ * Answers conditional GET requests for the REST resources.
+ *
+ * All of the resources are derived from the dataset, which only changes
+ * when a new analysis run is loaded. Hence, every response carries an ETag
+ * made of the dataset tag and the Accept header (which selects the
+ * representation), and the time the dataset version was published. If the
+ * client already has the current representation, we reply with 304 without
+ * invoking the resource.
+ *
+ * Paths listed in the 'excludes' init parameter (comma separated prefixes
+ * of the path info) are passed through untouched.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class ConditionalGetFilter implements Filter {
+
+    private DatasetMonitor monitor;
+    private final List<String> excludes = new ArrayList<>();
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        monitor = (DatasetMonitor) config.getServletContext()
+                .getAttribute("DatasetMonitor");
+        String e = config.getInitParameter("excludes");
+        if (e != null) {
+            for (String prefix : e.split(",")) {
+                if (!prefix.trim().isEmpty()) {
+                    excludes.add(prefix.trim());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res,
+            FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) req;
+        HttpServletResponse response = (HttpServletResponse) res;
+        String tag = monitor == null ? null : monitor.getTag();
+        if (tag == null || !isCacheable(request)) {
+            chain.doFilter(req, res);
+            return;
+        }
+
+        String accept = request.getHeader("Accept");
+        String etag = "\"" + tag + "-" + Integer.toHexString(
+                accept == null ? 0 : accept.hashCode()) + "\"";
+        long lastModified = monitor.getLastModified();
+        response.setHeader("ETag", etag);
+        response.setDateHeader("Last-Modified", lastModified);
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("Vary", "Accept");
+
+        String matched = getMatchingTag(request, etag, lastModified);
+        if (matched != null) {
+            response.setHeader("ETag", matched);
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        chain.doFilter(req, res);
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    private boolean isCacheable(HttpServletRequest request) {
+        String method = request.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return false;
+        }
+        String path = request.getPathInfo();
+        if (path != null) {
+            for (String prefix : excludes) {
+                if (path.startsWith(prefix)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the ETag of the client's copy if it is still current, or null
+     * if the resource must be sent. The client may hold the identity or the
+     * gzip variant of the tag. If-None-Match takes precedence over
+     * If-Modified-Since (RFC 7232).
+     */
+    private String getMatchingTag(HttpServletRequest request, String etag,
+            long lastModified) {
+        String gzipTag = etag.substring(0, etag.length() - 1)
+                + CompressionFilter.ETAG_SUFFIX + "\"";
+        String match = request.getHeader("If-None-Match");
+        if (match != null) {
+            for (String t : match.split(",")) {
+                t = t.trim();
+                if (t.equals(etag) || t.equals("*")) {
+                    return etag;
+                }
+                if (t.equals(gzipTag)) {
+                    return gzipTag;
+                }
+            }
+            return null;
+        }
+        try {
+            long since = request.getDateHeader("If-Modified-Since");
+            return since != -1 && lastModified <= since ? etag : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
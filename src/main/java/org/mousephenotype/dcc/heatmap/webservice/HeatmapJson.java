@@ -0,0 +1,129 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.webservice;
+
+import java.io.IOException;
+import java.util.List;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.mousephenotype.dcc.heatmap.engine.SignificanceTable;
+import org.mousephenotype.dcc.heatmap.entities.ColumnEntry;
+import org.mousephenotype.dcc.heatmap.entities.RowEntry;
+
+/**
+ * Writes heatmap headers and significance with the same field names as the
+ * JAXB mapping of RowEntry, ColumnEntry and SignificanceEntry. Used by the
+ * writers that do not go through JAXB. As with JAXB, null fields are left
+ * out; unlike the mapped JSON notation, numbers are not quoted and lists are
+ * always written as arrays.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+final class HeatmapJson {
+
+    static final JsonFactory FACTORY = new JsonFactory();
+
+    /* JSON names of the SignificanceTable p-values, in table order */
+    private static final String[] PVALUE_NAMES = {
+        "v", "o", "e", "m", "s", "os", "es", "ms"
+    };
+
+    private HeatmapJson() {
+    }
+
+    static void writeRowHeaders(JsonGenerator g, List<RowEntry> rows)
+            throws IOException {
+        g.writeArrayFieldStart("row_headers");
+        for (RowEntry r : rows) {
+            g.writeStartObject();
+            writeString(g, "k", r.getKey());
+            writeString(g, "v", r.getValue());
+            g.writeEndObject();
+        }
+        g.writeEndArray();
+    }
+
+    static void writeColumnHeaders(JsonGenerator g, List<ColumnEntry> columns)
+            throws IOException {
+        g.writeArrayFieldStart("column_headers");
+        for (ColumnEntry c : columns) {
+            g.writeStartObject();
+            writeNumber(g, "k", c.getKey());
+            writeString(g, "g", c.getSymbol());
+            writeString(g, "a", c.getAllele());
+            writeString(g, "s", c.getStrain());
+            writeString(g, "c", c.getCentre());
+            writeString(g, "i", c.getIlar());
+            writeNumber(g, "cid", c.getCid());
+            writeNumber(g, "gid", c.getGid());
+            writeNumber(g, "sid", c.getSid());
+            g.writeEndObject();
+        }
+        g.writeEndArray();
+    }
+
+    /**
+     * Writes the dense significance matrix row by row, straight from the
+     * supplied table. Cells without data, or not below the threshold, have
+     * -1.0 p-values, as in the JAXB mapping of SignificanceEntry.
+     */
+    static void writeSignificance(JsonGenerator g, SignificanceTable table,
+            List<RowEntry> rows, List<ColumnEntry> columns, double threshold)
+            throws IOException {
+        int nrow = rows.size(), ncol = columns.size();
+        int[] keys = table.getKeyIndices(rows);
+        int[] slots = new int[ncol];
+        for (int j = 0; j < ncol; ++j) {
+            slots[j] = table.slotOf(columns.get(j).getKey());
+        }
+
+        g.writeArrayFieldStart("significance");
+        for (int i = 0; i < nrow; ++i) {
+            g.writeStartArray();
+            for (int j = 0; j < ncol; ++j) {
+                int cell = keys[i] == -1 || slots[j] == -1
+                        ? -1 : table.find(slots[j], keys[i]);
+                if (cell != -1 && !table.isBelow(cell, threshold)) {
+                    cell = -1;
+                }
+                g.writeStartObject();
+                for (int p = 0; p < SignificanceTable.NUM_PVALUES; ++p) {
+                    double v = cell == -1 ? -1.0 : table.getPvalue(cell, p);
+                    if (!Double.isNaN(v)) {
+                        g.writeNumberField(PVALUE_NAMES[p], v);
+                    }
+                }
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+        }
+        g.writeEndArray();
+    }
+
+    private static void writeString(JsonGenerator g, String name, String value)
+            throws IOException {
+        if (value != null) {
+            g.writeStringField(name, value);
+        }
+    }
+
+    private static void writeNumber(JsonGenerator g, String name, Integer value)
+            throws IOException {
+        if (value != null) {
+            g.writeNumberField(name, value);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.webservice;
+
+import java.util.List;
+import org.mousephenotype.dcc.heatmap.engine.SignificanceTable;
+import org.mousephenotype.dcc.heatmap.entities.ColumnEntry;
+import org.mousephenotype.dcc.heatmap.entities.RowEntry;
+
+/**
+ * Heatmap response that is written directly from the significance table by
+ * HeatmapStreamWriter, instead of going through the Heatmap object graph.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class HeatmapStream {
+
+    private final String title;
+    private final List<RowEntry> rowEntries;
+    private final List<ColumnEntry> columnEntries;
+    private final SignificanceTable table;
+    private final double threshold;
+
+    public HeatmapStream(String title, List<RowEntry> rowEntries,
+            List<ColumnEntry> columnEntries, SignificanceTable table,
+            double threshold) {
+        this.title = title;
+        this.rowEntries = rowEntries;
+        this.columnEntries = columnEntries;
+        this.table = table;
+        this.threshold = threshold;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public List<RowEntry> getRowEntries() {
+        return rowEntries;
+    }
+
+    public List<ColumnEntry> getColumnEntries() {
+        return columnEntries;
+    }
+
+    public SignificanceTable getTable() {
+        return table;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.webservice;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import javax.servlet.ServletContext;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.mousephenotype.dcc.heatmap.metrics.Metrics;
+
+/**
+ * Writes the JSON heatmap response as it is produced: first the headers,
+ * then the significance matrix one row at a time, so that the matrix is
+ * never held in memory.
+ *
+ * The fields are those of the JAXB mapping of HeatmapPack, but the JSON is
+ * not what Jersey produces for it with the default (mapped) notation: here,
+ * numbers and booleans are not quoted, lists are always arrays, even with
+ * one element, and every significance row is a plain array of cells.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public class HeatmapStreamWriter implements MessageBodyWriter<HeatmapStream> {
+
+    @Context
+    private ServletContext context;
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType,
+            Annotation[] annotations, MediaType mediaType) {
+        return HeatmapStream.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public long getSize(HeatmapStream t, Class<?> type, Type genericType,
+            Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(HeatmapStream t, Class<?> type, Type genericType,
+            Annotation[] annotations, MediaType mediaType,
+            MultivaluedMap<String, Object> httpHeaders,
+            OutputStream entityStream) throws IOException {
+        JsonGenerator g = HeatmapJson.FACTORY.createJsonGenerator(
+                entityStream, JsonEncoding.UTF8);
+        g.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        g.writeStartObject();
+        g.writeBooleanField("success", true);
+        g.writeObjectFieldStart("heatmap");
+        g.writeStringField("title", t.getTitle());
+        HeatmapJson.writeRowHeaders(g, t.getRowEntries());
+        HeatmapJson.writeColumnHeaders(g, t.getColumnEntries());
+        HeatmapJson.writeSignificance(g, t.getTable(),
+                t.getRowEntries(), t.getColumnEntries(), t.getThreshold());
+        g.writeEndObject();
+        g.writeEndObject();
+        g.flush();
+        addCellsEmitted((long) t.getRowEntries().size()
+                * t.getColumnEntries().size());
+    }
+
+    private void addCellsEmitted(long cells) {
+        Metrics metrics = context == null
+                ? null : (Metrics) context.getAttribute("Metrics");
+        if (metrics != null) {
+            metrics.addCellsEmitted(cells);
+        }
+    }
+}
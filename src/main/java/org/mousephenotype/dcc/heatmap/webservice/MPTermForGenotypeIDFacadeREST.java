@@ -16,32 +16,40 @@
 package org.mousephenotype.dcc.heatmap.webservice;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
-import org.mousephenotype.dcc.entities.impress.ParamMpterm;
+import javax.ws.rs.core.StreamingOutput;
 import org.mousephenotype.dcc.entities.overviews.ACentre;
 import org.mousephenotype.dcc.entities.overviews.Genotype;
 import org.mousephenotype.dcc.entities.overviews.Strain;
+import org.mousephenotype.dcc.heatmap.engine.DimensionCatalog;
+import org.mousephenotype.dcc.heatmap.engine.OntologyClosure;
+import org.mousephenotype.dcc.heatmap.engine.SignificanceTable;
+import org.mousephenotype.dcc.heatmap.engine.TermLabels;
 import org.mousephenotype.dcc.heatmap.entities.CellDetails;
 import org.mousephenotype.dcc.heatmap.entities.ColumnEntry;
 import org.mousephenotype.dcc.heatmap.entities.Details;
-import org.mousephenotype.dcc.heatmap.entities.Heatmap;
 import org.mousephenotype.dcc.heatmap.entities.MPTermForGenotypeID;
-import org.mousephenotype.dcc.heatmap.entities.ParametersForProcedureType;
+import org.mousephenotype.dcc.heatmap.entities.PackedHeatmap;
+import org.mousephenotype.dcc.heatmap.entities.RolledUpTerm;
 import org.mousephenotype.dcc.heatmap.entities.RowEntry;
-import org.mousephenotype.dcc.heatmap.entities.Significance;
-import org.mousephenotype.dcc.heatmap.entities.SignificanceEntry;
+import org.mousephenotype.dcc.heatmap.entities.SparseCell;
+import org.mousephenotype.dcc.heatmap.entities.SparseHeatmap;
+import org.mousephenotype.dcc.heatmap.persistence.QueryExecutor;
+import org.mousephenotype.dcc.heatmap.persistence.VersionedCache;
 
 /**
  *
@@ -51,6 +59,9 @@ import org.mousephenotype.dcc.heatmap.entities.SignificanceEntry;
 @Path("ontological")
 public class MPTermForGenotypeIDFacadeREST extends AbstractFacade<MPTermForGenotypeID> {
 
+    private static final VersionedCache<String, List<RowEntry>> rowCache =
+            new VersionedCache<>(256);
+
     public MPTermForGenotypeIDFacadeREST() {
         super(MPTermForGenotypeID.class);
     }
@@ -58,19 +69,111 @@ public class MPTermForGenotypeIDFacadeREST extends AbstractFacade<MPTermForGenot
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Path("heatmap")
-    public HeatmapPack getByMgiId(
+    public HeatmapStream getByMgiId(
+            @QueryParam("type") String type,
+            @QueryParam("mgiid") String mgiId,
+            @QueryParam("filter") String filter,
+            @QueryParam("threshold") Double threshold) {
+        Future<List<RowEntry>> rows = submitRowEntries(type);
+        List<ColumnEntry> c = getColumnEntries(filter, mgiId);
+        List<RowEntry> r = QueryExecutor.await(rows);
+        return new HeatmapStream("A heatmap", r, c,
+                getSignificanceEngine().getOntologicalTable(type),
+                getThreshold(threshold, SignificanceTable.NO_THRESHOLD));
+    }
+
+    @GET
+    @Produces(PackedHeatmap.MEDIA_TYPE)
+    @Path("heatmap")
+    public PackedHeatmap getPackedByMgiId(
+            @QueryParam("type") String type,
+            @QueryParam("mgiid") String mgiId,
+            @QueryParam("filter") String filter,
+            @QueryParam("threshold") Double threshold) {
+        Future<List<RowEntry>> rows = submitRowEntries(type);
+        List<ColumnEntry> c = getColumnEntries(filter, mgiId);
+        List<RowEntry> r = QueryExecutor.await(rows);
+        float[][] v = getSignificanceEngine().getOntologicalTable(type).toPlanes(r, c,
+                getThreshold(threshold, SignificanceTable.NO_THRESHOLD));
+        return new PackedHeatmap("A heatmap", r, c, v);
+    }
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("heatmap/sparse")
+    public SparseHeatmapPack getSparseByMgiId(
             @QueryParam("type") String type,
             @QueryParam("mgiid") String mgiId,
-            @QueryParam("filter") String filter) {
-        HeatmapPack p = new HeatmapPack();
-        List<RowEntry> r = getRowEntries(type);
+            @QueryParam("filter") String filter,
+            @QueryParam("threshold") Double threshold) {
+        SparseHeatmapPack p = new SparseHeatmapPack();
+        Future<List<RowEntry>> rows = submitRowEntries(type);
         List<ColumnEntry> c = getColumnEntries(filter, mgiId);
-        SignificanceEntry[][] v = getSignificance(r, c, type);
-        Heatmap heatmap = new Heatmap("A heatmap", r, c, v);
-        p.setData(heatmap);
+        List<RowEntry> r = QueryExecutor.await(rows);
+        List<SparseCell> v = getSignificanceEngine().getOntologicalTable(type).toCells(r, c,
+                getThreshold(threshold, SignificanceTable.NO_THRESHOLD));
+        p.setData(new SparseHeatmap("A heatmap", r, c, v));
+        getMetrics().addCellsEmitted(v.size());
         return p;
     }
 
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("heatmap/tile")
+    public HeatmapTilePack getTileByMgiId(
+            @QueryParam("type") String type,
+            @QueryParam("mgiid") String mgiId,
+            @QueryParam("filter") String filter,
+            @QueryParam("threshold") Double threshold,
+            @QueryParam("row") Integer row,
+            @QueryParam("col") Integer column,
+            @QueryParam("nrow") Integer numRows,
+            @QueryParam("ncol") Integer numColumns,
+            @QueryParam("trow") Integer tileRow,
+            @QueryParam("tcol") Integer tileColumn) {
+        long version = getDatasetMonitor().getVersion();
+        Future<List<RowEntry>> rows = submitRowEntries(type);
+        List<ColumnEntry> c = getColumnEntries(filter, mgiId);
+        List<RowEntry> r = QueryExecutor.await(rows);
+        return getTile(version, r, c,
+                getSignificanceEngine().getOntologicalTable(type),
+                getThreshold(threshold, SignificanceTable.NO_THRESHOLD),
+                TileRange.of(row, numRows, tileRow,
+                        TileRange.DEFAULT_ROWS, r.size()),
+                TileRange.of(column, numColumns, tileColumn,
+                        TileRange.DEFAULT_COLUMNS, c.size()));
+    }
+
+    @GET
+    @Produces(SignificanceExport.CSV)
+    @Path("export")
+    public StreamingOutput getCsvExport(
+            @QueryParam("type") String type,
+            @QueryParam("threshold") Double threshold) {
+        return getExport(SignificanceExport.CSV, getRowEntries(type),
+                getSignificanceEngine().getOntologicalTable(type), threshold);
+    }
+
+    @GET
+    @Produces(SignificanceExport.TSV)
+    @Path("export")
+    public StreamingOutput getTsvExport(
+            @QueryParam("type") String type,
+            @QueryParam("threshold") Double threshold) {
+        return getExport(SignificanceExport.TSV, getRowEntries(type),
+                getSignificanceEngine().getOntologicalTable(type), threshold);
+    }
+
+    @GET
+    @Produces(SignificanceExport.BINARY)
+    @Path("export")
+    public StreamingOutput getBinaryExport(
+            @QueryParam("type") String type,
+            @QueryParam("threshold") Double threshold) {
+        return getExport(SignificanceExport.BINARY, getRowEntries(type),
+                getSignificanceEngine().getOntologicalTable(type), threshold);
+    }
+
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Path("rows")
@@ -89,31 +192,15 @@ public class MPTermForGenotypeIDFacadeREST extends AbstractFacade<MPTermForGenot
             @QueryParam("threshold") Double threshold) {
         CellDetailsPack p = new CellDetailsPack();
 
-        if (threshold == null) {
-            threshold = 1.0;
-        } else {
-            if (threshold < 0.0) {
-                threshold = 0.0;
-            } else if (threshold > 1.0) {
-                threshold = 1.0;
-            }
-        }
-
         EntityManager em = getEntityManager();
         TypedQuery<Details> query;
         query = em.createNamedQuery("MPTermForGenotypeID.getDetails", Details.class);
         query.setParameter("type", type);
         query.setParameter("genotypeId", genotypeId);
-        List<Details> tempDetails = query.getResultList();
-        List<Details> significant = new ArrayList<>();
-        for (Details x : tempDetails) {
-            SignificanceEntry s = x.getSignificance();
-            if (s.getpValue() < threshold || s.getSexPvalue() < threshold) {
-                setMpTerm(em, x);
-                setProcedureName(em, x);
-                significant.add(x);
-            }
-        }
+        query.setParameter("threshold", getThreshold(threshold, 1.0));
+        List<Details> significant = query.getResultList();
+        setMpTerms(significant);
+        setProcedureNames(significant);
         Collections.sort(significant);
         CellDetails details = new CellDetails(significant);
         em.close();
@@ -122,7 +209,75 @@ public class MPTermForGenotypeIDFacadeREST extends AbstractFacade<MPTermForGenot
         return p;
     }
 
+    /**
+     * Returns the MP terms at the supplied depth of the ontology to which the
+     * significant annotations of a genotype roll up, with the smallest
+     * p-value that rolled up to each term. The top-level terms are at depth
+     * 1. All depths are served from a single annotation query.
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("rollup")
+    public RollUpPack getRollUp(
+            @QueryParam("gid") Integer genotypeId,
+            @QueryParam("depth") @DefaultValue("1") int depth,
+            @QueryParam("threshold") Double threshold) {
+        RollUpPack p = new RollUpPack();
+
+        EntityManager em = getEntityManager();
+        TypedQuery<Object[]> query;
+        query = em.createNamedQuery("MPTermForGenotypeID.getAnnotatedTerms", Object[].class);
+        query.setParameter("genotypeId", genotypeId);
+        query.setParameter("threshold", getThreshold(threshold, 1.0));
+        List<Object[]> annotated = query.getResultList();
+        em.close();
+
+        List<String> terms = new ArrayList<>(annotated.size());
+        List<Double> pvalues = new ArrayList<>(annotated.size());
+        for (Object[] a : annotated) {
+            terms.add((String) a[0]);
+            pvalues.add(a[1] == null ? null : ((Number) a[1]).doubleValue());
+        }
+
+        OntologyClosure ontology = getOntologyClosure();
+        List<RolledUpTerm> rolledUp = new ArrayList<>();
+        for (Map.Entry<String, Double> e
+                : ontology.rollUp(terms, pvalues, depth).entrySet()) {
+            rolledUp.add(new RolledUpTerm(e.getKey(),
+                    ontology.getName(e.getKey()), e.getValue()));
+        }
+        p.setDepth(depth);
+        p.setData(rolledUp);
+        return p;
+    }
+
+    /*
+     * Rows do not depend on the columns, so on a cache miss we query them
+     * concurrently. A cache hit is only a lookup, which is cheaper than
+     * handing it to another thread.
+     */
+    private Future<List<RowEntry>> submitRowEntries(final String type) {
+        List<RowEntry> cached = rowCache.get(String.valueOf(type),
+                getDatasetMonitor().getVersion());
+        if (cached != null) {
+            return QueryExecutor.completed(cached);
+        }
+        return getQueryExecutor().submit(new Callable<List<RowEntry>>() {
+            @Override
+            public List<RowEntry> call() {
+                return getRowEntries(type);
+            }
+        });
+    }
+
     private List<RowEntry> getRowEntries(String type) {
+        String cacheKey = String.valueOf(type);
+        long version = getDatasetMonitor().getVersion();
+        List<RowEntry> cached = rowCache.get(cacheKey, version);
+        if (cached != null) {
+            return cached;
+        }
+
         TypedQuery<RowEntry> query;
         EntityManager em = getEntityManager();
         if (type == null) {
@@ -138,38 +293,39 @@ public class MPTermForGenotypeIDFacadeREST extends AbstractFacade<MPTermForGenot
         List<RowEntry> rowEntries = query.getResultList();
         em.close();
 
+        TermLabels labels = getTermLabels();
         List<RowEntry> trimmed = new ArrayList<>();
         Iterator<RowEntry> entries = rowEntries.iterator();
         while (entries.hasNext()) {
             RowEntry entry = entries.next();
-            String temp = entry.getValue()
-                    .replaceAll("/", " / ")
-                    .replaceFirst(" phenotype$", "");
-            entry.setValue(temp.substring(0, 1).toUpperCase()
-                    + temp.substring(1));
+            String label = labels.getRowLabel(entry.getKey());
+            entry.setValue(label == null
+                    ? TermLabels.toRowLabel(entry.getValue()) : label);
             trimmed.add(entry);
         }
 
+        rowCache.put(cacheKey, trimmed, version);
         return trimmed;
     }
 
     private List<ColumnEntry> getColumnEntries(
             String filter,
             String mgiId) {
-        EntityManager em = getEntityManager();
-        TypedQuery<Genotype> query;
-        query = em.createNamedQuery(
-                (filter == null
-                        ? "MPTermForGenotypeID.getColumnEntriesMgiId"
-                        : "MPTermForGenotypeID.getColumnEntriesFilter"),
-                Genotype.class);
+        List<Genotype> genes;
         if (filter == null) {
+            EntityManager em = getEntityManager();
+            TypedQuery<Genotype> query;
+            query = em.createNamedQuery(
+                    "MPTermForGenotypeID.getColumnEntriesMgiId", Genotype.class);
             query.setParameter("mgiId", mgiId);
+            genes = query.getResultList();
+            em.close();
         } else {
-            query.setParameter("filter", filter + "%");
+            genes = getGenotypeIndex().getByPrefix(filter);
         }
         List<ColumnEntry> columnEntries = new ArrayList<>();
-        List<Genotype> genes = query.getResultList();
+
+        DimensionCatalog catalog = getDimensionCatalog();
         Iterator<Genotype> i = genes.iterator();
         while (i.hasNext()) {
             Genotype g = i.next();
@@ -178,130 +334,18 @@ public class MPTermForGenotypeIDFacadeREST extends AbstractFacade<MPTermForGenot
             c.setAllele(g.getAlleleName());
             c.setSymbol(g.getGeneSymbol());
 
-            ACentre centre = em.find(ACentre.class, g.getCentreId());
+            ACentre centre = catalog.getCentre(g.getCentreId());
             if (centre != null) {
                 c.setCentre(centre.getFullName());
                 c.setIlar(centre.getShortName());
             }
 
-            Strain strain = em.find(Strain.class, g.getStrainId());
+            Strain strain = catalog.getStrain(g.getStrainId());
             if (strain != null) {
                 c.setStrain(strain.getStrain());
             }
             columnEntries.add(c);
         }
-        em.close();
         return columnEntries;
     }
-
-    private SignificanceEntry[][] getSignificance(List<RowEntry> rows, List<ColumnEntry> columns, String type) {
-        EntityManager em = getEntityManager();
-        TypedQuery<Significance> query;
-
-        if (columns.isEmpty() || rows.isEmpty()) {
-            return new SignificanceEntry[0][0];
-        }
-
-        List<Significance> significance = new ArrayList<>();
-        try {
-            if (type == null) {
-                query = em.createNamedQuery("MPTermForGenotypeID.getSignificanceFilterUntyped", Significance.class);
-            } else {
-                query = em.createNamedQuery("MPTermForGenotypeID.getSignificanceFilterTyped", Significance.class);
-                query.setParameter("type", type);
-            }
-
-            Collection<String> genotypeIds = new ArrayList<>();
-            for (int i = 0, ncol = columns.size(); i < ncol; ++i) {
-                genotypeIds.add(columns.get(i).getKey().toString());
-            }
-            query.setParameter("genotypeIds", genotypeIds);
-            // have to add a restriction on mpterm
-            Collection<String> mpterms = new ArrayList<>();
-            for (int i = 0; i < rows.size(); i++) {
-                mpterms.add(rows.get(i).getKey());
-            }
-            query.setParameter("mpterms", mpterms);
-            significance = query.getResultList();
-        } catch (Exception e) {
-            System.err.println(e.getMessage());
-        }
-        em.close();
-        return toGrid(significance, rows, columns);
-    }
-
-    private SignificanceEntry[][] toGrid(
-            List<Significance> significance,
-            List<RowEntry> rows,
-            List<ColumnEntry> columns) {
-        int i, j, nrow = rows.size(), ncol = columns.size();
-        HashMap<String, Integer> rowIndex = new HashMap<>();
-        HashMap<String, Integer> columnIndex = new HashMap<>();
-
-        for (i = 0; i < nrow; ++i) {
-            rowIndex.put(rows.get(i).getKey(), i);
-        }
-
-        for (i = 0; i < ncol; ++i) {
-            columnIndex.put(columns.get(i).getKey().toString(), i);
-        }
-
-        SignificanceEntry[][] pvalues = new SignificanceEntry[nrow][ncol];
-        for (i = 0; i < nrow; ++i) {
-            for (j = 0; j < ncol; ++j) {
-                pvalues[i][j] = new SignificanceEntry(-1.0, -1.0, -1.0, -1.0, -1.0, -1.0, -1.0, -1.0);
-            }
-        }
-
-        Iterator<Significance> iterator = significance.iterator();
-        while (iterator.hasNext()) {
-            Significance s = iterator.next();
-            i = rowIndex.get(s.getKey());
-            j = columnIndex.get(s.getGenotypeId().toString());
-            pvalues[i][j] = s.getSignificance();
-        }
-        return pvalues;
-    }
-
-    private void setMpTerm(EntityManager em, Details d) {
-        TypedQuery<ParamMpterm> query;
-        query = em.createNamedQuery("ParamMpterm.findByMpId", ParamMpterm.class);
-        query.setParameter("mpId", d.getMpId());
-        query.setMaxResults(1);
-        ParamMpterm r = query.getSingleResult();
-        if (r != null) {
-            d.setMpTerm(r.getMpTerm());
-            d.setSelectionOutcome(getSelectionOutcome(r.getSelectionOutcome()));
-        }
-    }
-
-    private void setProcedureName(EntityManager em, Details d) {
-        TypedQuery<ParametersForProcedureType> query;
-        query = em.createNamedQuery("ParametersForProcedureType.findByParameterKey", ParametersForProcedureType.class);
-        query.setParameter("parameterKey", d.getParameterKey());
-        query.setMaxResults(1);
-        ParametersForProcedureType r = query.getSingleResult();
-        if (r != null) {
-            d.setProcedureName(r.getProcedureName());
-        }
-    }
-
-    private int getSelectionOutcome(String o) {
-        int outcome = -1;
-        switch (o) {
-            case "INCREASED":
-                outcome = 1;
-                break;
-            case "DECREASED":
-                outcome = 2;
-                break;
-            case "ABNORMAL":
-                outcome = 3;
-                break;
-            case "INFERRED":
-                outcome = 4;
-                break;
-        }
-        return outcome;
-    }
 }
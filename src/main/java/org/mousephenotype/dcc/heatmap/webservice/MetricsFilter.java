@@ -0,0 +1,173 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.webservice;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import org.mousephenotype.dcc.heatmap.metrics.Metrics;
+
+/**
+ * Records the latency of every REST request, from the moment it enters the
+ * web application until the last byte of the response is written, and
+ * counts the bytes written.
+ *
+ * This must be the first filter, so that compression is included in the
+ * latency and the bytes are counted as they are sent. Requests are
+ * recorded by resource method (see ResourceMethodNames); requests that
+ * did not match a method are recorded as 'unmatched'.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class MetricsFilter implements Filter {
+
+    private static final String UNMATCHED = "unmatched";
+    private Metrics metrics;
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        metrics = (Metrics) config.getServletContext().getAttribute("Metrics");
+    }
+
+    @Override
+    public void doFilter(ServletRequest req, ServletResponse res,
+            FilterChain chain) throws IOException, ServletException {
+        if (metrics == null) {
+            chain.doFilter(req, res);
+            return;
+        }
+        long start = System.nanoTime();
+        CountingResponse response =
+                new CountingResponse((HttpServletResponse) res);
+        int status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        try {
+            chain.doFilter(req, response);
+            response.flushBuffer();
+            status = response.getStatus();
+        } finally {
+            Object method = req.getAttribute(
+                    ResourceMethodNames.METHOD_ATTRIBUTE);
+            metrics.recordRequest(method == null
+                    ? UNMATCHED : method.toString(),
+                    System.nanoTime() - start, status);
+            metrics.addBytesWritten(response.getCount());
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    private static class CountingResponse extends HttpServletResponseWrapper {
+
+        private final HttpServletResponse response;
+        private CountingStream stream;
+        private PrintWriter writer;
+
+        CountingResponse(HttpServletResponse response) {
+            super(response);
+            this.response = response;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (writer != null) {
+                throw new IllegalStateException("getWriter() was already called");
+            }
+            if (stream == null) {
+                stream = new CountingStream(response.getOutputStream());
+            }
+            return stream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                if (stream != null) {
+                    throw new IllegalStateException("getOutputStream() was already called");
+                }
+                stream = new CountingStream(response.getOutputStream());
+                writer = new PrintWriter(new OutputStreamWriter(stream,
+                        response.getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            super.flushBuffer();
+        }
+
+        long getCount() {
+            return stream == null ? 0L : stream.count;
+        }
+    }
+
+    private static class CountingStream extends ServletOutputStream {
+
+        private final ServletOutputStream out;
+        private long count = 0L;
+
+        CountingStream(ServletOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            ++count;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return out.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            out.setWriteListener(listener);
+        }
+    }
+}
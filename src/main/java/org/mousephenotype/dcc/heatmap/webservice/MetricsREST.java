@@ -0,0 +1,59 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.webservice;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import javax.servlet.ServletContext;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.StreamingOutput;
+import org.mousephenotype.dcc.heatmap.metrics.Metrics;
+
+/**
+ * Request, query and response metrics in the Prometheus text format, for
+ * scraping by a monitoring server.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+@Path("metrics")
+public class MetricsREST {
+
+    public static final String MEDIA_TYPE = "text/plain; version=0.0.4";
+
+    @Context
+    private ServletContext context;
+
+    @GET
+    @Produces(MEDIA_TYPE)
+    public StreamingOutput getMetrics() {
+        final Metrics metrics = (Metrics) context.getAttribute("Metrics");
+        return new StreamingOutput() {
+            @Override
+            public void write(OutputStream out) throws IOException {
+                Writer w = new BufferedWriter(
+                        new OutputStreamWriter(out, "UTF-8"));
+                metrics.writeTo(w);
+                w.flush();
+            }
+        };
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.webservice;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import javax.servlet.ServletContext;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.mousephenotype.dcc.heatmap.entities.PackedHeatmap;
+import org.mousephenotype.dcc.heatmap.metrics.Metrics;
+
+/**
+ * Writes a packed heatmap in the binary representation. All integers and
+ * floats are little-endian:
+ *
+ * <pre>
+ *  0: 'DCCH'
+ *  4: uint16 format version, uint16 reserved
+ *  8: uint32 length H of the JSON header, which is padded to 4 bytes
+ * 12: JSON header, ASCII only, same as the JSON response minus significance
+ * 12 + H: uint32 number of rows, uint32 number of columns
+ * 20 + H: the eight float32 planes (see PackedHeatmap)
+ * </pre>
+ *
+ * Every plane starts at a 4-byte boundary, so that the client can map the
+ * planes directly onto Float32Array views.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+@Provider
+@Produces(PackedHeatmap.MEDIA_TYPE)
+public class PackedHeatmapWriter implements MessageBodyWriter<PackedHeatmap> {
+
+    private static final byte[] MAGIC = {'D', 'C', 'C', 'H'};
+    private static final short FORMAT_VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Context
+    private ServletContext context;
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType,
+            Annotation[] annotations, MediaType mediaType) {
+        return PackedHeatmap.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public long getSize(PackedHeatmap t, Class<?> type, Type genericType,
+            Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(PackedHeatmap t, Class<?> type, Type genericType,
+            Annotation[] annotations, MediaType mediaType,
+            MultivaluedMap<String, Object> httpHeaders,
+            OutputStream entityStream) throws IOException {
+        byte[] header = getHeader(t);
+        int padding = (4 - header.length % 4) % 4;
+        int nrow = t.getRowEntries().size(), ncol = t.getColumnEntries().size();
+
+        ByteBuffer b = ByteBuffer.allocate(BUFFER_SIZE);
+        b.order(ByteOrder.LITTLE_ENDIAN);
+        b.put(MAGIC);
+        b.putShort(FORMAT_VERSION);
+        b.putShort((short) 0);
+        b.putInt(header.length + padding);
+        entityStream.write(b.array(), 0, b.position());
+        entityStream.write(header);
+        for (int i = 0; i < padding; ++i) {
+            entityStream.write(' ');
+        }
+
+        b.clear();
+        b.putInt(nrow);
+        b.putInt(ncol);
+        for (float[] plane : t.getPlanes()) {
+            for (float v : plane) {
+                if (b.remaining() < 4) {
+                    entityStream.write(b.array(), 0, b.position());
+                    b.clear();
+                }
+                b.putFloat(v);
+            }
+        }
+        entityStream.write(b.array(), 0, b.position());
+        entityStream.flush();
+        addCellsEmitted((long) nrow * ncol);
+    }
+
+    private void addCellsEmitted(long cells) {
+        Metrics metrics = context == null
+                ? null : (Metrics) context.getAttribute("Metrics");
+        if (metrics != null) {
+            metrics.addCellsEmitted(cells);
+        }
+    }
+
+    private byte[] getHeader(PackedHeatmap t) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonGenerator g = HeatmapJson.FACTORY.createJsonGenerator(out, JsonEncoding.UTF8);
+        g.enable(JsonGenerator.Feature.ESCAPE_NON_ASCII);
+        g.writeStartObject();
+        g.writeBooleanField("success", true);
+        g.writeObjectFieldStart("heatmap");
+        g.writeStringField("title", t.getTitle());
+        HeatmapJson.writeRowHeaders(g, t.getRowEntries());
+        HeatmapJson.writeColumnHeaders(g, t.getColumnEntries());
+        g.writeEndObject();
+        g.writeEndObject();
+        g.close();
+        return out.toByteArray();
+    }
+}
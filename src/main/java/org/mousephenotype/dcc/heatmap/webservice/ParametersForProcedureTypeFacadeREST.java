@@ -17,29 +17,39 @@ package org.mousephenotype.dcc.heatmap.webservice;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.FormParam;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
-import org.mousephenotype.dcc.entities.impress.ParamMpterm;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.Response;
 import org.mousephenotype.dcc.entities.overviews.ACentre;
 import org.mousephenotype.dcc.entities.overviews.Genotype;
 import org.mousephenotype.dcc.entities.overviews.Strain;
+import org.mousephenotype.dcc.heatmap.engine.DimensionCatalog;
+import org.mousephenotype.dcc.heatmap.engine.GenotypeIndex;
+import org.mousephenotype.dcc.heatmap.engine.SignificanceTable;
 import org.mousephenotype.dcc.heatmap.entities.CellDetails;
 import org.mousephenotype.dcc.heatmap.entities.ColumnEntry;
 import org.mousephenotype.dcc.heatmap.entities.Details;
-import org.mousephenotype.dcc.heatmap.entities.Heatmap;
+import org.mousephenotype.dcc.heatmap.entities.PackedHeatmap;
 import org.mousephenotype.dcc.heatmap.entities.ParametersForProcedureType;
 import org.mousephenotype.dcc.heatmap.entities.RowEntry;
-import org.mousephenotype.dcc.heatmap.entities.Significance;
-import org.mousephenotype.dcc.heatmap.entities.SignificanceEntry;
+import org.mousephenotype.dcc.heatmap.entities.SparseCell;
+import org.mousephenotype.dcc.heatmap.entities.SparseHeatmap;
+import org.mousephenotype.dcc.heatmap.persistence.Configuration;
 
 /**
  *
@@ -49,45 +59,89 @@ import org.mousephenotype.dcc.heatmap.entities.SignificanceEntry;
 @Path("procedural")
 public class ParametersForProcedureTypeFacadeREST extends AbstractFacade<ParametersForProcedureType> {
 
+    private static final int BULK_MAX_COLUMNS =
+            Configuration.getInt("bulk.max.columns", 10000);
+
     public ParametersForProcedureTypeFacadeREST() {
         super(ParametersForProcedureType.class);
     }
 
     private List<RowEntry> getRowEntries(Integer type) {
-        TypedQuery<RowEntry> query;
-        EntityManager em = getEntityManager();
-        if (type == null) {
-            query = em.createNamedQuery(
-                    "ParametersForProcedureType.getRowEntriesUntyped",
-                    RowEntry.class);
-        } else {
-            query = em.createNamedQuery(
-                    "ParametersForProcedureType.getRowEntriesTyped",
-                    RowEntry.class);
-            query.setParameter("type", type);
-        }
-        List<RowEntry> rowEntries = query.getResultList();
-        em.close();
-        return rowEntries;
+        return getDimensionCatalog().getProceduralRows(type);
     }
 
     private List<ColumnEntry> getColumnEntries(
             String filter,
             String mgiId) {
-        EntityManager em = getEntityManager();
-        TypedQuery<Genotype> query;
-        query = em.createNamedQuery(
-                (filter == null
-                        ? "ParametersForProcedureType.getColumnEntriesMgiId"
-                        : "ParametersForProcedureType.getColumnEntriesFilter"),
-                Genotype.class);
+        List<Genotype> genes;
         if (filter == null) {
+            EntityManager em = getEntityManager();
+            TypedQuery<Genotype> query;
+            query = em.createNamedQuery(
+                    "ParametersForProcedureType.getColumnEntriesMgiId", Genotype.class);
             query.setParameter("mgiId", mgiId);
+            genes = query.getResultList();
+            em.close();
         } else {
-            query.setParameter("filter", filter + "%");
+            genes = getGenotypeIndex().getByPrefix(filter);
+        }
+        return toColumnEntries(genes);
+    }
+
+    /**
+     * Returns the column headers for a bulk heatmap request: the genotypes
+     * of every supplied gene, in the order the genes were supplied, followed
+     * by the supplied genotypes that were not already included. Each value
+     * may also be a comma separated list. Genes and genotypes without
+     * procedures are ignored.
+     */
+    private List<ColumnEntry> getBulkColumnEntries(
+            List<String> mgiIds,
+            List<String> genotypeIds) {
+        GenotypeIndex index = getGenotypeIndex();
+        Map<Integer, Genotype> genes = new LinkedHashMap<>();
+        for (String id : split(mgiIds)) {
+            for (Genotype g : index.getByGeneId(id)) {
+                genes.put(g.getGenotypeId(), g);
+            }
         }
-        List<ColumnEntry> columnEntries = new ArrayList<>();
-        List<Genotype> genes = query.getResultList();
+        for (String id : split(genotypeIds)) {
+            Genotype g;
+            try {
+                g = index.getByGenotypeId(Integer.parseInt(id));
+            } catch (NumberFormatException e) {
+                throw new WebApplicationException(Response.Status.BAD_REQUEST);
+            }
+            if (g != null && !genes.containsKey(g.getGenotypeId())) {
+                genes.put(g.getGenotypeId(), g);
+            }
+        }
+        if (genes.size() > BULK_MAX_COLUMNS) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        return toColumnEntries(genes.values());
+    }
+
+    private static List<String> split(List<String> values) {
+        List<String> ids = new ArrayList<>();
+        if (values == null) {
+            return ids;
+        }
+        for (String v : values) {
+            for (String id : v.split(",")) {
+                id = id.trim();
+                if (!id.isEmpty()) {
+                    ids.add(id);
+                }
+            }
+        }
+        return ids;
+    }
+
+    private List<ColumnEntry> toColumnEntries(Collection<Genotype> genes) {
+        List<ColumnEntry> columnEntries = new ArrayList<>(genes.size());
+
+        DimensionCatalog catalog = getDimensionCatalog();
         Iterator<Genotype> i = genes.iterator();
         while (i.hasNext()) {
             Genotype g = i.next();
@@ -99,140 +153,162 @@ public class ParametersForProcedureTypeFacadeREST extends AbstractFacade<Paramet
             c.setCid(g.getCentreId());
             c.setSid(g.getStrainId());
 
-            ACentre centre = em.find(ACentre.class, g.getCentreId());
+            ACentre centre = catalog.getCentre(g.getCentreId());
             if (centre != null) {
                 c.setCentre(centre.getFullName());
                 c.setIlar(centre.getShortName());
             }
 
-            Strain strain = em.find(Strain.class, g.getStrainId());
+            Strain strain = catalog.getStrain(g.getStrainId());
             if (strain != null) {
                 c.setStrain(strain.getStrain());
             }
             columnEntries.add(c);
         }
-        em.close();
         return columnEntries;
     }
 
-    private SignificanceEntry[][] getSignificance(
-            List<RowEntry> rows,
-            List<ColumnEntry> columns,
-            Integer type) {
-        EntityManager em = getEntityManager();
-        TypedQuery<Significance> query;
-        if (columns.isEmpty() || rows.isEmpty()) {
-            return new SignificanceEntry[0][0];
-        }
-        List<Significance> significance = new ArrayList<>();
-
-        try {
-            if (type == null) {
-                query = em.createNamedQuery("ParametersForProcedureType.getSignificanceFilterUntyped", Significance.class);
-            } else {
-                query = em.createNamedQuery("ParametersForProcedureType.getSignificanceFilterTyped", Significance.class);
-                query.setParameter("type", type);
-            }
-
-            Collection<String> genotypeIds = new ArrayList<>();
-            for (int i = 0, ncol = columns.size(); i < ncol; ++i) {
-                genotypeIds.add(columns.get(i).getKey().toString());
-            }
-            query.setParameter("genotypeIds", genotypeIds);
-
-            significance = query.getResultList();
-        } catch (Exception e) {
-            System.err.println(e.getMessage());
-        }
-        em.close();
-        return toGrid(significance, rows, columns);
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("heatmap")
+    public HeatmapStream getByMgiId(
+            @QueryParam("type") Integer type,
+            @QueryParam("mgiid") String mgiId,
+            @QueryParam("filter") String filter,
+            @QueryParam("threshold") Double threshold) {
+        List<RowEntry> r = getRowEntries(type);
+        List<ColumnEntry> c = getColumnEntries(filter, mgiId);
+        return new HeatmapStream("A heatmap", r, c,
+                getSignificanceEngine().getProceduralTable(type),
+                getThreshold(threshold, SignificanceTable.NO_THRESHOLD));
     }
 
-    private SignificanceEntry[][] toGrid(
-            List<Significance> significance,
-            List<RowEntry> rows,
-            List<ColumnEntry> columns) {
-        Integer i, j, nrow = rows.size(), ncol = columns.size();
-        HashMap<String, Integer> rowIndex = new HashMap<>();
-        HashMap<String, Integer> columnIndex = new HashMap<>();
-
-        for (i = 0; i < nrow; ++i) {
-            rowIndex.put(rows.get(i).getKey(), i);
-        }
-
-        for (i = 0; i < ncol; ++i) {
-            columnIndex.put(columns.get(i).getKey().toString(), i);
-        }
-
-        SignificanceEntry[][] pvalues = new SignificanceEntry[nrow][ncol];
-        for (i = 0; i < nrow; ++i) {
-            for (j = 0; j < ncol; ++j) {
-                pvalues[i][j] = new SignificanceEntry(-1.0, -1.0, -1.0, -1.0, -1.0, -1.0, -1.0, -1.0);
-            }
-        }
-
-        Iterator<Significance> iterator = significance.iterator();
-        while (iterator.hasNext()) {
-            Significance s = iterator.next();
-            i = rowIndex.get(s.getKey());
-            j = columnIndex.get(s.getGenotypeId().toString());
-            if (i != null && j != null) {
-                pvalues[i][j] = s.getSignificance();
-            }
-        }
-        return pvalues;
+    @GET
+    @Produces(PackedHeatmap.MEDIA_TYPE)
+    @Path("heatmap")
+    public PackedHeatmap getPackedByMgiId(
+            @QueryParam("type") Integer type,
+            @QueryParam("mgiid") String mgiId,
+            @QueryParam("filter") String filter,
+            @QueryParam("threshold") Double threshold) {
+        List<RowEntry> r = getRowEntries(type);
+        List<ColumnEntry> c = getColumnEntries(filter, mgiId);
+        float[][] v = getSignificanceEngine().getProceduralTable(type).toPlanes(r, c,
+                getThreshold(threshold, SignificanceTable.NO_THRESHOLD));
+        return new PackedHeatmap("A heatmap", r, c, v);
     }
 
-    private int getSelectionOutcome(String o) {
-        int outcome = -1;
-        switch (o) {
-            case "INCREASED":
-                outcome = 1;
-                break;
-            case "DECREASED":
-                outcome = 2;
-                break;
-            case "ABNORMAL":
-                outcome = 3;
-                break;
-            case "INFERRED":
-                outcome = 4;
-                break;
-        }
-        return outcome;
+    /**
+     * Heatmap for many genes at once, for batch clients. The genes (mgiid)
+     * and genotypes (gid) are sent as form parameters, and the columns of
+     * all of them share one set of row headers and one significance table.
+     */
+    @POST
+    @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("heatmap/bulk")
+    public HeatmapStream getByMgiIds(
+            @FormParam("type") Integer type,
+            @FormParam("mgiid") List<String> mgiIds,
+            @FormParam("gid") List<String> genotypeIds,
+            @FormParam("threshold") Double threshold) {
+        List<RowEntry> r = getRowEntries(type);
+        List<ColumnEntry> c = getBulkColumnEntries(mgiIds, genotypeIds);
+        return new HeatmapStream("A heatmap", r, c,
+                getSignificanceEngine().getProceduralTable(type),
+                getThreshold(threshold, SignificanceTable.NO_THRESHOLD));
     }
 
-    private void setMpTerm(EntityManager em, Details d) {
-        TypedQuery<ParamMpterm> query;
-        query = em.createNamedQuery("ParamMpterm.findByMpId", ParamMpterm.class);
-        query.setParameter("mpId", d.getMpId());
-        query.setMaxResults(1);
-        try {
-            ParamMpterm r = query.getSingleResult();
-            if (r != null) {
-                d.setMpTerm(r.getMpTerm());
-                d.setSelectionOutcome(getSelectionOutcome(r.getSelectionOutcome()));
-            }
-        } catch (Exception e) {
-        }
+    @POST
+    @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+    @Produces(PackedHeatmap.MEDIA_TYPE)
+    @Path("heatmap/bulk")
+    public PackedHeatmap getPackedByMgiIds(
+            @FormParam("type") Integer type,
+            @FormParam("mgiid") List<String> mgiIds,
+            @FormParam("gid") List<String> genotypeIds,
+            @FormParam("threshold") Double threshold) {
+        List<RowEntry> r = getRowEntries(type);
+        List<ColumnEntry> c = getBulkColumnEntries(mgiIds, genotypeIds);
+        float[][] v = getSignificanceEngine().getProceduralTable(type).toPlanes(r, c,
+                getThreshold(threshold, SignificanceTable.NO_THRESHOLD));
+        return new PackedHeatmap("A heatmap", r, c, v);
     }
 
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    @Path("heatmap")
-    public HeatmapPack getByMgiId(
+    @Path("heatmap/sparse")
+    public SparseHeatmapPack getSparseByMgiId(
             @QueryParam("type") Integer type,
             @QueryParam("mgiid") String mgiId,
-            @QueryParam("filter") String filter) {
-        HeatmapPack p = new HeatmapPack();
+            @QueryParam("filter") String filter,
+            @QueryParam("threshold") Double threshold) {
+        SparseHeatmapPack p = new SparseHeatmapPack();
         List<RowEntry> r = getRowEntries(type);
         List<ColumnEntry> c = getColumnEntries(filter, mgiId);
-        SignificanceEntry[][] v = getSignificance(r, c, type);
-        Heatmap heatmap = new Heatmap("A heatmap", r, c, v);
-        p.setData(heatmap);
+        List<SparseCell> v = getSignificanceEngine().getProceduralTable(type).toCells(r, c,
+                getThreshold(threshold, SignificanceTable.NO_THRESHOLD));
+        p.setData(new SparseHeatmap("A heatmap", r, c, v));
+        getMetrics().addCellsEmitted(v.size());
         return p;
     }
 
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("heatmap/tile")
+    public HeatmapTilePack getTileByMgiId(
+            @QueryParam("type") Integer type,
+            @QueryParam("mgiid") String mgiId,
+            @QueryParam("filter") String filter,
+            @QueryParam("threshold") Double threshold,
+            @QueryParam("row") Integer row,
+            @QueryParam("col") Integer column,
+            @QueryParam("nrow") Integer numRows,
+            @QueryParam("ncol") Integer numColumns,
+            @QueryParam("trow") Integer tileRow,
+            @QueryParam("tcol") Integer tileColumn) {
+        long version = getDatasetMonitor().getVersion();
+        List<RowEntry> r = getRowEntries(type);
+        List<ColumnEntry> c = getColumnEntries(filter, mgiId);
+        return getTile(version, r, c,
+                getSignificanceEngine().getProceduralTable(type),
+                getThreshold(threshold, SignificanceTable.NO_THRESHOLD),
+                TileRange.of(row, numRows, tileRow,
+                        TileRange.DEFAULT_ROWS, r.size()),
+                TileRange.of(column, numColumns, tileColumn,
+                        TileRange.DEFAULT_COLUMNS, c.size()));
+    }
+
+    @GET
+    @Produces(SignificanceExport.CSV)
+    @Path("export")
+    public StreamingOutput getCsvExport(
+            @QueryParam("type") Integer type,
+            @QueryParam("threshold") Double threshold) {
+        return getExport(SignificanceExport.CSV, getRowEntries(type),
+                getSignificanceEngine().getProceduralTable(type), threshold);
+    }
+
+    @GET
+    @Produces(SignificanceExport.TSV)
+    @Path("export")
+    public StreamingOutput getTsvExport(
+            @QueryParam("type") Integer type,
+            @QueryParam("threshold") Double threshold) {
+        return getExport(SignificanceExport.TSV, getRowEntries(type),
+                getSignificanceEngine().getProceduralTable(type), threshold);
+    }
+
+    @GET
+    @Produces(SignificanceExport.BINARY)
+    @Path("export")
+    public StreamingOutput getBinaryExport(
+            @QueryParam("type") Integer type,
+            @QueryParam("threshold") Double threshold) {
+        return getExport(SignificanceExport.BINARY, getRowEntries(type),
+                getSignificanceEngine().getProceduralTable(type), threshold);
+    }
+
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Path("rows")
@@ -251,30 +327,14 @@ public class ParametersForProcedureTypeFacadeREST extends AbstractFacade<Paramet
             @QueryParam("threshold") Double threshold) {
         CellDetailsPack p = new CellDetailsPack();
 
-        if (threshold == null) {
-            threshold = 1.0;
-        } else {
-            if (threshold < 0.0) {
-                threshold = 0.0;
-            } else if (threshold > 1.0) {
-                threshold = 1.0;
-            }
-        }
-
         EntityManager em = getEntityManager();
         TypedQuery<Details> query;
         query = em.createNamedQuery("ParametersForProcedureType.getDetails", Details.class);
         query.setParameter("type", type);
         query.setParameter("genotypeId", genotypeId);
-        List<Details> tempDetails = query.getResultList();
-        List<Details> significant = new ArrayList<>();
-        for (Details x : tempDetails) {
-            SignificanceEntry s = x.getSignificance();
-            if (s.getpValue() < threshold || s.getSexPvalue() < threshold) {
-                setMpTerm(em, x);
-                significant.add(x);
-            }
-        }
+        query.setParameter("threshold", getThreshold(threshold, 1.0));
+        List<Details> significant = query.getResultList();
+        setMpTerms(significant);
         CellDetails details = new CellDetails(significant);
         em.close();
 
@@ -291,30 +351,14 @@ public class ParametersForProcedureTypeFacadeREST extends AbstractFacade<Paramet
             @QueryParam("threshold") Double threshold) {
         CellDetailsPack p = new CellDetailsPack();
 
-        if (threshold == null) {
-            threshold = 1.0;
-        } else {
-            if (threshold < 0.0) {
-                threshold = 0.0;
-            } else if (threshold > 1.0) {
-                threshold = 1.0;
-            }
-        }
-
         EntityManager em = getEntityManager();
         TypedQuery<Details> query;
         query = em.createNamedQuery("ParametersForProcedureType.getParameterDetails", Details.class);
         query.setParameter("parameterKey", parameterKey);
         query.setParameter("genotypeId", genotypeId);
-        List<Details> tempDetails = query.getResultList();
-        List<Details> significant = new ArrayList<>();
-        for (Details x : tempDetails) {
-            SignificanceEntry s = x.getSignificance();
-            if (s.getpValue() < threshold || s.getSexPvalue() < threshold) {
-                setMpTerm(em, x);
-                significant.add(x);
-            }
-        }
+        query.setParameter("threshold", getThreshold(threshold, 1.0));
+        List<Details> significant = query.getResultList();
+        setMpTerms(significant);
         CellDetails details = new CellDetails(significant);
         em.close();
 
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.webservice;
+
+import com.sun.jersey.api.model.AbstractMethod;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.ResourceFilter;
+import com.sun.jersey.spi.container.ResourceFilterFactory;
+import java.util.Collections;
+import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.Context;
+
+/**
+ * Tells the servlet filters which resource method a request was matched
+ * to, by setting the request attribute METHOD_ATTRIBUTE to
+ * 'Resource.method'. This is registered with Jersey in web.xml.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class ResourceMethodNames implements ResourceFilterFactory {
+
+    public static final String METHOD_ATTRIBUTE = "heatmap.resource.method";
+
+    /* a thread local proxy for the current request */
+    @Context
+    private HttpServletRequest request;
+
+    @Override
+    public List<ResourceFilter> create(AbstractMethod am) {
+        if (am.getMethod() == null) {
+            return null;
+        }
+        final String name = am.getResource().getResourceClass().getSimpleName()
+                + "." + am.getMethod().getName();
+        final ContainerRequestFilter filter = new ContainerRequestFilter() {
+            @Override
+            public ContainerRequest filter(ContainerRequest r) {
+                request.setAttribute(METHOD_ATTRIBUTE, name);
+                return r;
+            }
+        };
+        return Collections.<ResourceFilter>singletonList(new ResourceFilter() {
+            @Override
+            public ContainerRequestFilter getRequestFilter() {
+                return filter;
+            }
+
+            @Override
+            public ContainerResponseFilter getResponseFilter() {
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.webservice;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+import javax.ws.rs.core.StreamingOutput;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.mousephenotype.dcc.entities.overviews.Genotype;
+import org.mousephenotype.dcc.heatmap.engine.SignificanceTable;
+import org.mousephenotype.dcc.heatmap.entities.RowEntry;
+import org.mousephenotype.dcc.heatmap.metrics.Metrics;
+
+/**
+ * Streams the significance of every genotype for one set of row headers,
+ * one populated cell at a time. Nothing is collected in memory apart from
+ * the row headers and the write buffer, however many genotypes there are.
+ *
+ * The text formats (CSV and TSV) have a header line followed by one line
+ * per cell with the genotype, gene and row of the cell, and the eight
+ * p-values in SignificanceTable order; a missing p-value is left empty.
+ * The binary format is little-endian, as in the packed heatmap:
+ *
+ * <pre>
+ *  0: 'DCCE'
+ *  4: uint16 format version, uint16 reserved
+ *  8: uint32 length H of the JSON header, which is padded to 4 bytes
+ * 12: JSON header, ASCII only, with the row headers
+ * 12 + H: for each genotype with cells, uint32 genotype id, uint32 number
+ *         of cells N, followed by N times uint32 row index and the eight
+ *         float32 p-values (NaN if missing)
+ * </pre>
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+class SignificanceExport implements StreamingOutput {
+
+    static final String CSV = "text/csv";
+    static final String TSV = "text/tab-separated-values";
+    static final String BINARY = "application/x-dcc-heatmap-export";
+    private static final byte[] MAGIC = {'D', 'C', 'C', 'E'};
+    private static final short FORMAT_VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /* genotypes written between flushes of the response */
+    private static final int CHUNK = 500;
+    private static final String[] TEXT_HEADER = {
+        "genotype_id", "mgi_id", "gene_symbol", "allele", "centre_id",
+        "strain_id", "key", "label",
+        "v", "o", "e", "m", "s", "os", "es", "ms"
+    };
+    private final String mediaType;
+    private final List<RowEntry> rows;
+    private final SignificanceTable table;
+    private final List<Genotype> genotypes;
+    private final double threshold;
+    private final Metrics metrics;
+
+    SignificanceExport(String mediaType, List<RowEntry> rows,
+            SignificanceTable table, List<Genotype> genotypes,
+            double threshold, Metrics metrics) {
+        this.mediaType = mediaType;
+        this.rows = rows;
+        this.table = table;
+        this.genotypes = genotypes;
+        this.threshold = threshold;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void write(OutputStream out) throws IOException {
+        if (BINARY.equals(mediaType)) {
+            writeBinary(out);
+        } else {
+            writeText(out, TSV.equals(mediaType) ? '\t' : ',');
+        }
+    }
+
+    /* maps key index of the table to the row, or -1 if not a row */
+    private int[] getRowOfKey() {
+        int[] rowOfKey = new int[table.getNumKeys()];
+        Arrays.fill(rowOfKey, -1);
+        int[] keys = table.getKeyIndices(rows);
+        for (int i = 0; i < keys.length; ++i) {
+            if (keys[i] != -1) {
+                rowOfKey[keys[i]] = i;
+            }
+        }
+        return rowOfKey;
+    }
+
+    private void writeText(OutputStream out, char separator)
+            throws IOException {
+        Writer w = new BufferedWriter(
+                new OutputStreamWriter(out, "UTF-8"), BUFFER_SIZE);
+        int[] rowOfKey = getRowOfKey();
+        long cells = 0L;
+
+        for (int i = 0; i < TEXT_HEADER.length; ++i) {
+            if (i > 0) {
+                w.write(separator);
+            }
+            w.write(TEXT_HEADER[i]);
+        }
+        w.write('\n');
+
+        for (int n = 0, ng = genotypes.size(); n < ng; ++n) {
+            Genotype g = genotypes.get(n);
+            int slot = table.slotOf(g.getGenotypeId());
+            if (slot == -1) {
+                continue;
+            }
+            for (int c = table.getFirstCell(slot), e = table.getLastCell(slot);
+                    c < e; ++c) {
+                int r = rowOfKey[table.getCellKey(c)];
+                if (r == -1 || !table.isBelow(c, threshold)) {
+                    continue;
+                }
+                RowEntry row = rows.get(r);
+                w.write(String.valueOf(g.getGenotypeId()));
+                writeField(w, separator, g.getGeneId());
+                writeField(w, separator, g.getGeneSymbol());
+                writeField(w, separator, g.getAlleleName());
+                writeField(w, separator, String.valueOf(g.getCentreId()));
+                writeField(w, separator, String.valueOf(g.getStrainId()));
+                writeField(w, separator, row.getKey());
+                writeField(w, separator, row.getValue());
+                for (int p = 0; p < SignificanceTable.NUM_PVALUES; ++p) {
+                    w.write(separator);
+                    double v = table.getPvalue(c, p);
+                    if (!Double.isNaN(v)) {
+                        w.write(Double.toString(v));
+                    }
+                }
+                w.write('\n');
+                ++cells;
+            }
+            if (n % CHUNK == CHUNK - 1) {
+                w.flush();
+            }
+        }
+        w.flush();
+        addCellsEmitted(cells);
+    }
+
+    /* quotes the field, as in RFC 4180, if it has special characters */
+    private static void writeField(Writer w, char separator, String value)
+            throws IOException {
+        w.write(separator);
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(separator) == -1 && value.indexOf('"') == -1
+                && value.indexOf('\n') == -1 && value.indexOf('\r') == -1) {
+            w.write(value);
+        } else {
+            w.write('"');
+            w.write(value.replace("\"", "\"\""));
+            w.write('"');
+        }
+    }
+
+    private void writeBinary(OutputStream out) throws IOException {
+        byte[] header = getHeader();
+        int padding = (4 - header.length % 4) % 4;
+        int[] rowOfKey = getRowOfKey();
+        long cells = 0L;
+
+        ByteBuffer b = ByteBuffer.allocate(BUFFER_SIZE);
+        b.order(ByteOrder.LITTLE_ENDIAN);
+        b.put(MAGIC);
+        b.putShort(FORMAT_VERSION);
+        b.putShort((short) 0);
+        b.putInt(header.length + padding);
+        out.write(b.array(), 0, b.position());
+        out.write(header);
+        for (int i = 0; i < padding; ++i) {
+            out.write(' ');
+        }
+        b.clear();
+
+        int cellBytes = 4 * (1 + SignificanceTable.NUM_PVALUES);
+        for (int n = 0, ng = genotypes.size(); n < ng; ++n) {
+            int genotypeId = genotypes.get(n).getGenotypeId();
+            int slot = table.slotOf(genotypeId);
+            if (slot == -1) {
+                continue;
+            }
+            int first = table.getFirstCell(slot), last = table.getLastCell(slot);
+            int count = 0;
+            for (int c = first; c < last; ++c) {
+                if (rowOfKey[table.getCellKey(c)] != -1
+                        && table.isBelow(c, threshold)) {
+                    ++count;
+                }
+            }
+            if (count == 0) {
+                continue;
+            }
+            if (b.remaining() < 8) {
+                out.write(b.array(), 0, b.position());
+                b.clear();
+            }
+            b.putInt(genotypeId);
+            b.putInt(count);
+            for (int c = first; c < last; ++c) {
+                int r = rowOfKey[table.getCellKey(c)];
+                if (r == -1 || !table.isBelow(c, threshold)) {
+                    continue;
+                }
+                if (b.remaining() < cellBytes) {
+                    out.write(b.array(), 0, b.position());
+                    b.clear();
+                }
+                b.putInt(r);
+                for (int p = 0; p < SignificanceTable.NUM_PVALUES; ++p) {
+                    b.putFloat((float) table.getPvalue(c, p));
+                }
+            }
+            cells += count;
+            if (n % CHUNK == CHUNK - 1) {
+                out.write(b.array(), 0, b.position());
+                b.clear();
+                out.flush();
+            }
+        }
+        out.write(b.array(), 0, b.position());
+        out.flush();
+        addCellsEmitted(cells);
+    }
+
+    private byte[] getHeader() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonGenerator g = HeatmapJson.FACTORY.createJsonGenerator(out, JsonEncoding.UTF8);
+        g.enable(JsonGenerator.Feature.ESCAPE_NON_ASCII);
+        g.writeStartObject();
+        HeatmapJson.writeRowHeaders(g, rows);
+        g.writeEndObject();
+        g.close();
+        return out.toByteArray();
+    }
+
+    private void addCellsEmitted(long cells) {
+        if (metrics != null) {
+            metrics.addCellsEmitted(cells);
+        }
+    }
+}
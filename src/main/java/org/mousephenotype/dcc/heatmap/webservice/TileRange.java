@@ -0,0 +1,68 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.webservice;
+
+import org.mousephenotype.dcc.heatmap.persistence.Configuration;
+
+/**
+ * Range of rows, or columns, of a heatmap tile.
+ *
+ * A range is either given by its first index and size, or by a tile number
+ * and size, in which case the first index is the tile number times the
+ * size. As with the threshold, out of range values are clamped instead of
+ * rejected, so that a client may ask for a tile beyond the end of a matrix
+ * that has shrunk since its last request.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+class TileRange {
+
+    static final int DEFAULT_ROWS = Configuration.getInt("tile.rows", 50);
+    static final int DEFAULT_COLUMNS = Configuration.getInt("tile.columns", 50);
+    static final int MAX_SIZE = Configuration.getInt("tile.max.size", 500);
+    private final int from;
+    private final int to;
+
+    private TileRange(int from, int to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Returns the range for the supplied query parameters, any of which may
+     * be null, over total rows or columns.
+     */
+    static TileRange of(Integer first, Integer size, Integer tile,
+            int defaultSize, int total) {
+        int n = size == null ? defaultSize : Math.max(1, Math.min(MAX_SIZE, size));
+        long start;
+        if (tile != null) {
+            start = (long) Math.max(0, tile) * n;
+        } else {
+            start = first == null ? 0 : Math.max(0, first);
+        }
+        int from = (int) Math.min(total, start);
+        return new TileRange(from, Math.min(total, from + n));
+    }
+
+    int getFrom() {
+        return from;
+    }
+
+    int getTo() {
+        return to;
+    }
+}
@@ -34,6 +34,54 @@ create table parameters_for_procedure_type (
     index (parameter_key)
 ) engine = innodb;
 
+/**
+ * Significance of each (row key, genotype) pair, with the eight p-values
+ * already reduced from phenodcc_annotations.annotation. The dimension is
+ * the heatmap view the row key belongs to:
+ *
+ *     0 - procedure type (procedural heatmap, untyped)
+ *     1 - parameter key (procedural heatmap, typed)
+ *     2 - top-level MP term (ontological heatmap, untyped)
+ *     3 - MP term under the top-level MP term in group_key (typed)
+ *
+ * This table is maintained by the heatmap web application (see
+ * SignificanceRefresher) whenever the annotations change, so there is no
+ * need to fill it by hand.
+ */
+create table significance (
+    id bigint not null auto_increment,
+    dimension tinyint not null,
+    group_key varchar(100) not null default '',
+    row_key varchar(100) not null,
+    genotype_id int(11) not null,
+    pvalue double,
+    hom_pvalue double,
+    het_pvalue double,
+    hem_pvalue double,
+    sex_pvalue double,
+    hom_sex_pvalue double,
+    het_sex_pvalue double,
+    hem_sex_pvalue double,
+    primary key (id),
+    unique key (dimension, group_key, genotype_id, row_key),
+    index (genotype_id)
+) engine = innodb;
+
+/**
+ * How far the significance table has been brought up to date. Annotations
+ * are only ever appended, so the refresher re-aggregates the (row key,
+ * genotype) pairs touched by annotations above last_annotation_id. If the
+ * annotation count or the parameter/procedure associations do not match
+ * the recorded values, the whole table is rebuilt instead.
+ */
+create table significance_state (
+    id tinyint not null,
+    last_annotation_id bigint not null,
+    annotation_count bigint not null,
+    parameters_signature varchar(64) not null,
+    primary key (id)
+) engine = innodb;
+
 /**
  * Run the following every time the parameter/procedure association changes.
  * This will fill the tables defined above.
@@ -192,6 +192,109 @@
         request.send(null);
     }
 
+    /**
+     * Significance keys in the order of the planes in a packed heatmap.
+     */
+    var DCC_PACKED_KEYS = ['v', 'o', 'e', 'm', 's', 'os', 'es', 'ms'],
+        DCC_PACKED_TYPE = 'application/x-dcc-heatmap';
+
+    /**
+     * Decodes UTF-8 encoded bytes. We convert in chunks, since passing a
+     * large array to String.fromCharCode() overflows the call stack.
+     *
+     * @param {Uint8Array} bytes Encoded text.
+     * @return {String} Decoded text.
+     */
+    function dcc_decodeText(bytes) {
+        var text = '', i, n = bytes.length;
+        for (i = 0; i < n; i += 4096)
+            text += String.fromCharCode.apply(null,
+                bytes.subarray(i, Math.min(i + 4096, n)));
+        return decodeURIComponent(escape(text));
+    }
+
+    /**
+     * Decodes a packed heatmap into the same object that is returned by
+     * the JSON representation. See PackedHeatmapWriter for the layout.
+     *
+     * @param {ArrayBuffer} buffer Packed heatmap.
+     * @return {Object} Heatmap response object.
+     */
+    function dcc_decodePackedHeatmap(buffer) {
+        var view = new DataView(buffer), headerLength, data, nrow, ncol, ncell, offset, planes = [],
+            significance = [], row, cell, value, i, j, k, p;
+
+        if (view.getUint8(0) !== 68 || view.getUint8(1) !== 67
+            || view.getUint8(2) !== 67 || view.getUint8(3) !== 72)
+            dcc_reportError('Invalid packed heatmap');
+        headerLength = view.getUint32(8, true);
+        data = JSON.parse(dcc_decodeText(
+            new Uint8Array(buffer, 12, headerLength)));
+
+        offset = 12 + headerLength;
+        nrow = view.getUint32(offset, true);
+        ncol = view.getUint32(offset + 4, true);
+        ncell = nrow * ncol;
+        offset += 8;
+        for (p = 0; p < DCC_PACKED_KEYS.length; ++p) {
+            planes.push(new Float32Array(buffer, offset, ncell));
+            offset += ncell * 4;
+        }
+
+        for (i = 0, k = 0; i < nrow; ++i) {
+            row = [];
+            for (j = 0; j < ncol; ++j, ++k) {
+                cell = {};
+                for (p = 0; p < DCC_PACKED_KEYS.length; ++p) {
+                    value = planes[p][k];
+                    if (!isNaN(value))
+                        cell[DCC_PACKED_KEYS[p]] = value;
+                }
+                row.push(cell);
+            }
+            significance.push(row);
+        }
+        data.heatmap.significance = significance;
+        return data;
+    }
+
+    /**
+     * Retrieves a heatmap. Where typed arrays are supported, we ask for the
+     * packed representation; otherwise, or if the server only returns JSON,
+     * we fall back to the JSON representation.
+     *
+     * @param {String} url Resource URL to retrieve the heatmap from.
+     * @param {Function} handler Handles successful retrieval.
+     */
+    function dcc_getHeatmap(url, handler) {
+        var request;
+        if (dcc.ie8 || window.ArrayBuffer === undefined
+            || window.DataView === undefined) {
+            dcc_get(url, handler);
+            return;
+        }
+        request = new XMLHttpRequest();
+        request.open('GET', url, true);
+        request.responseType = 'arraybuffer';
+        request.setRequestHeader('Accept',
+            DCC_PACKED_TYPE + ', application/json;q=0.9');
+        request.onreadystatechange = function (event) {
+            var type;
+            if (request.readyState === 4) {
+                if (request.status === 200) {
+                    type = request.getResponseHeader('Content-Type') || '';
+                    if (type.indexOf(DCC_PACKED_TYPE) === 0)
+                        handler(dcc_decodePackedHeatmap(request.response));
+                    else
+                        handler(JSON.parse(dcc_decodeText(
+                            new Uint8Array(request.response))));
+                } else
+                    dcc_reportError('Unable to retrieve data from ' + url);
+            }
+        };
+        request.send(null);
+    }
+
     /**
      * Returns a substring of the string object after discarding characters
      * from either the start, or the end.
@@ -2185,7 +2288,7 @@
                 dcc_reportError('MGI identifier must be defined');
             else {
                 me.showLoadingNotification(me.content, 'Loading heatmap...');
-                dcc_get(me.heatmapUrl + '?'
+                dcc_getHeatmap(me.heatmapUrl + '?'
                     + (me.mgiId === undefined ? '' : 'mgiid=' + me.mgiId)
                     + (me.type === undefined ? '' : '&type=' + me.type),
                     function (data) {
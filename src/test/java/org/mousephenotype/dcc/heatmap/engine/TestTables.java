@@ -0,0 +1,60 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.engine;
+
+import java.util.List;
+import org.mousephenotype.dcc.heatmap.entities.ColumnEntry;
+import org.mousephenotype.dcc.heatmap.entities.RowEntry;
+
+/**
+ * Significance tables for the tests, built from a dense matrix of overall
+ * p-values, where NaN marks a cell without data.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public final class TestTables {
+
+    private TestTables() {
+    }
+
+    /**
+     * Creates a table where cell (i, j) has the overall p-value pvalues[i][j]
+     * and a sex p-value of half of it; the zygosity specific p-values of
+     * every other column are null.
+     */
+    public static SignificanceTable create(List<RowEntry> rows,
+            List<ColumnEntry> columns, double[][] pvalues) {
+        SignificanceTable.Builder builder = new SignificanceTable.Builder();
+        Object[] row = new Object[SignificanceTable.NUM_PVALUES];
+        for (int j = 0; j < columns.size(); ++j) {
+            for (int i = 0; i < rows.size(); ++i) {
+                double v = pvalues[i][j];
+                if (Double.isNaN(v)) {
+                    continue;
+                }
+                for (int p = 0; p < row.length; ++p) {
+                    row[p] = j % 2 == 1 && p != SignificanceTable.PVALUE
+                            && p != SignificanceTable.SEX_PVALUE
+                            ? null : v / (p == SignificanceTable.SEX_PVALUE
+                                    ? 2.0 : 1.0);
+                }
+                builder.add(rows.get(i).getKey(),
+                        columns.get(j).getKey(), row, 0);
+            }
+        }
+        return builder.build();
+    }
+}
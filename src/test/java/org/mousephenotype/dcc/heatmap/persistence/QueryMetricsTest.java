@@ -0,0 +1,118 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.persistence;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.sql.SQLException;
+import java.util.Collections;
+import org.eclipse.persistence.exceptions.DatabaseException;
+import org.eclipse.persistence.queries.DataReadQuery;
+import org.eclipse.persistence.queries.DatabaseQuery;
+import org.eclipse.persistence.sessions.SessionEvent;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.mousephenotype.dcc.heatmap.metrics.Metrics;
+
+/**
+ * Checks that a failing query nested inside another one does not disturb
+ * the timing of the enclosing query.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class QueryMetricsTest {
+
+    private final Metrics metrics = new Metrics();
+    private final QueryMetrics queryMetrics = new QueryMetrics(metrics);
+
+    @Test
+    public void failedInnerQuery() throws IOException {
+        DatabaseQuery outer = createQuery("Outer");
+        DatabaseQuery inner = createQuery("Inner");
+        queryMetrics.preExecuteQuery(createEvent(
+                SessionEvent.PreExecuteQuery, outer, null));
+        queryMetrics.preExecuteQuery(createEvent(
+                SessionEvent.PreExecuteQuery, inner, null));
+        failQuery(inner);
+        queryMetrics.postExecuteQuery(createEvent(
+                SessionEvent.PostExecuteQuery, outer,
+                Collections.nCopies(3, "row")));
+
+        String text = getMetrics();
+        assertContains(text, "heatmap_query_seconds_count{query=\"Outer\"} 1");
+        assertContains(text, "heatmap_query_rows_total{query=\"Outer\"} 3");
+        assertContains(text, "heatmap_query_errors_total{query=\"Outer\"} 0");
+        assertContains(text, "heatmap_query_seconds_count{query=\"Inner\"} 0");
+        assertContains(text, "heatmap_query_errors_total{query=\"Inner\"} 1");
+    }
+
+    /* e.g., a query that fails validation while it is being prepared */
+    @Test
+    public void innerQueryFailedBeforeStart() throws IOException {
+        DatabaseQuery outer = createQuery("Outer");
+        DatabaseQuery inner = createQuery("Inner");
+        queryMetrics.preExecuteQuery(createEvent(
+                SessionEvent.PreExecuteQuery, outer, null));
+        failQuery(inner);
+        queryMetrics.postExecuteQuery(createEvent(
+                SessionEvent.PostExecuteQuery, outer,
+                Collections.nCopies(2, "row")));
+
+        String text = getMetrics();
+        assertContains(text, "heatmap_query_seconds_count{query=\"Outer\"} 1");
+        assertContains(text, "heatmap_query_rows_total{query=\"Outer\"} 2");
+        assertContains(text, "heatmap_query_errors_total{query=\"Inner\"} 1");
+    }
+
+    private void failQuery(DatabaseQuery query) {
+        DatabaseException e = DatabaseException.sqlException(
+                new SQLException("Failed"));
+        e.setQuery(query);
+        try {
+            queryMetrics.handleException(e);
+            fail("The exception must be rethrown");
+        } catch (DatabaseException rethrown) {
+            assertSame(e, rethrown);
+        }
+    }
+
+    private String getMetrics() throws IOException {
+        StringWriter w = new StringWriter();
+        metrics.writeTo(w);
+        return w.toString();
+    }
+
+    private static void assertContains(String text, String line) {
+        assertTrue("Missing '" + line + "' in:\n" + text,
+                text.contains(line + "\n"));
+    }
+
+    private static DatabaseQuery createQuery(String name) {
+        DatabaseQuery query = new DataReadQuery();
+        query.setName(name);
+        return query;
+    }
+
+    private static SessionEvent createEvent(int code, DatabaseQuery query,
+            Object result) {
+        SessionEvent event = new SessionEvent(code, null);
+        event.setQuery(query);
+        event.setResult(result);
+        return event;
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2013 Medical Research Council Harwell.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mousephenotype.dcc.heatmap.webservice;
+
+import com.sun.jersey.api.json.JSONConfiguration;
+import com.sun.jersey.api.json.JSONJAXBContext;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.BooleanNode;
+import org.codehaus.jackson.node.DoubleNode;
+import org.codehaus.jackson.node.JsonNodeFactory;
+import org.codehaus.jackson.node.ObjectNode;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.mousephenotype.dcc.heatmap.engine.SignificanceTable;
+import org.mousephenotype.dcc.heatmap.engine.TestTables;
+import org.mousephenotype.dcc.heatmap.entities.ColumnEntry;
+import org.mousephenotype.dcc.heatmap.entities.Heatmap;
+import org.mousephenotype.dcc.heatmap.entities.RowEntry;
+
+/**
+ * Compares the streamed JSON heatmap with the JAXB mapping of HeatmapPack.
+ *
+ * Jersey marshals HeatmapPack with the mapped JSON notation, which quotes
+ * numbers and booleans, writes a list with one element as a plain object,
+ * leaves out empty lists and wraps the inner arrays of the significance
+ * matrix in an 'item' field. These differences are normalised away before
+ * the two are compared, so that the tests check that both carry the same
+ * content.
+ *
+ * @author Gagarine Yaikhom <g.yaikhom@har.mrc.ac.uk>
+ */
+public class HeatmapStreamWriterTest {
+
+    private static final List<String> LISTS = Arrays.asList(
+            "row_headers", "column_headers", "significance");
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void noRows() throws Exception {
+        assertSameAsJaxb(0, 3);
+    }
+
+    @Test
+    public void singleCell() throws Exception {
+        JsonNode streamed = assertSameAsJaxb(1, 1);
+        JsonNode significance = streamed.get("heatmap").get("significance");
+        assertTrue(significance.isArray());
+        assertTrue(significance.get(0).isArray());
+        assertTrue(significance.get(0).get(0).get("v").isNumber());
+        assertTrue(streamed.get("heatmap").get("row_headers").isArray());
+        assertTrue(streamed.get("heatmap").get("column_headers").isArray());
+    }
+
+    @Test
+    public void matrix() throws Exception {
+        assertSameAsJaxb(4, 3);
+    }
+
+    /* returns the streamed output, as written */
+    private JsonNode assertSameAsJaxb(int nrow, int ncol) throws Exception {
+        List<RowEntry> rows = createRows(nrow);
+        List<ColumnEntry> columns = createColumns(ncol);
+        SignificanceTable table = TestTables.create(rows, columns,
+                createPvalues(nrow, ncol));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new HeatmapStreamWriter().writeTo(new HeatmapStream("Test", rows,
+                columns, table, SignificanceTable.NO_THRESHOLD),
+                HeatmapStream.class, null, null, null, null, out);
+        JsonNode streamed = mapper.readTree(out.toByteArray());
+
+        HeatmapPack pack = new HeatmapPack();
+        pack.setData(new Heatmap("Test", rows, columns,
+                table.toGrid(rows, columns)));
+        out = new ByteArrayOutputStream();
+        new JSONJAXBContext(JSONConfiguration.DEFAULT, HeatmapPack.class)
+                .createJSONMarshaller().marshallToJSON(pack, out);
+        JsonNode jaxb = mapper.readTree(out.toByteArray());
+
+        assertEquals(normaliseHeatmap(jaxb), normaliseHeatmap(streamed));
+        return streamed;
+    }
+
+    private static JsonNode normaliseHeatmap(JsonNode response) {
+        JsonNode n = normalise(response);
+        ObjectNode heatmap = (ObjectNode) n.get("heatmap");
+        for (String name : LISTS) {
+            if (!heatmap.has(name)) {
+                heatmap.put(name, NODES.arrayNode());
+            }
+        }
+        return n;
+    }
+
+    private static JsonNode normalise(JsonNode node) {
+        if (node.isObject()) {
+            if (node.size() == 1 && node.has("item")) {
+                return normalise(asArray(node.get("item")));
+            }
+            ObjectNode o = NODES.objectNode();
+            Iterator<String> names = node.getFieldNames();
+            while (names.hasNext()) {
+                String name = names.next();
+                JsonNode value = node.get(name);
+                o.put(name, normalise(LISTS.contains(name)
+                        ? asArray(value) : value));
+            }
+            return o;
+        }
+        if (node.isArray()) {
+            ArrayNode a = NODES.arrayNode();
+            for (JsonNode e : node) {
+                a.add(normalise(e));
+            }
+            return a;
+        }
+        if (node.isTextual()) {
+            String s = node.getTextValue();
+            if ("true".equals(s) || "false".equals(s)) {
+                return BooleanNode.valueOf(Boolean.parseBoolean(s));
+            }
+            try {
+                return DoubleNode.valueOf(Double.parseDouble(s));
+            } catch (NumberFormatException e) {
+                return node;
+            }
+        }
+        if (node.isNumber()) {
+            return DoubleNode.valueOf(node.getDoubleValue());
+        }
+        return node;
+    }
+
+    private static JsonNode asArray(JsonNode node) {
+        if (node.isArray()) {
+            return node;
+        }
+        ArrayNode a = NODES.arrayNode();
+        a.add(node);
+        return a;
+    }
+
+    private static List<RowEntry> createRows(int nrow) {
+        List<RowEntry> rows = new ArrayList<>(nrow);
+        for (int i = 0; i < nrow; ++i) {
+            rows.add(new RowEntry("MP:" + (1000000 + i), "Term " + i));
+        }
+        return rows;
+    }
+
+    /* column keys must increase, as with the significance loading queries */
+    private static List<ColumnEntry> createColumns(int ncol) {
+        List<ColumnEntry> columns = new ArrayList<>(ncol);
+        for (int j = 0; j < ncol; ++j) {
+            ColumnEntry c = new ColumnEntry();
+            c.setKey(10 + j * 5);
+            c.setSymbol("Gene" + j);
+            c.setAllele(j % 2 == 0 ? "tm1a(EUCOMM)Wtsi" : null);
+            c.setStrain("C57BL/6N");
+            c.setCentre("Wtsi");
+            c.setIlar("H");
+            c.setCid(1 + j);
+            c.setGid(10 + j * 5);
+            c.setSid(2);
+            columns.add(c);
+        }
+        return columns;
+    }
+
+    /* a third of the cells have no data */
+    private static double[][] createPvalues(int nrow, int ncol) {
+        double[][] pvalues = new double[nrow][ncol];
+        for (int i = 0; i < nrow; ++i) {
+            for (int j = 0; j < ncol; ++j) {
+                pvalues[i][j] = (i + 2 * j) % 3 == 2
+                        ? Double.NaN : 0.001 * (1 + i * ncol + j);
+            }
+        }
+        return pvalues;
+    }
+}